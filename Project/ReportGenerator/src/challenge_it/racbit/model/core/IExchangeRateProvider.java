@@ -0,0 +1,25 @@
+package challenge_it.racbit.model.core;
+
+import java.util.Calendar;
+
+import challenge_it.racbit.model.core.exceptions.CurrencyConversionException;
+
+/**
+ * Specifies the contract to be implemented by all the sources of exchange rates
+ * (e.g. a web service, a file of rates or a fixed table).
+ */
+public interface IExchangeRateProvider {
+
+	/**
+	 * Gets the conversion rate from a currency to another, that is, the amount of the wanted
+	 * currency worth one unit of the converted currency. The providers that only know the current
+	 * rates return them for any date.
+	 *
+	 * @param from The currency to convert ( e.g.: EUR, USD, GBP, ...)
+	 * @param to The currency wanted ( e.g.: EUR, USD, GBP, ...)
+	 * @param date The day of the rate
+	 * @return the conversion rate, without rounding
+	 * @throws CurrencyConversionException if the rate can't be obtained
+	 */
+	public double getExchangeRate(String from, String to, Calendar date) throws CurrencyConversionException;
+}
@@ -13,7 +13,7 @@ import challenge_it.racbit.model.core.exceptions.ReportGenerationException;
 public interface IReportGenerator {
 
 	/**
-	 * Produces a report with the given arguments.
+	 * Produces a report with the given arguments, in the working directory.
 	 * 
 	 * @param reportDate the report date
 	 * @param country the country of the products
@@ -22,4 +22,16 @@ public interface IReportGenerator {
 	 * @throws CurrencyConversionException if an error occurred while obtaining the conversion rate
 	 */
 	public void generate(Calendar reportDate, Country country, Iterable<Product> results) throws ReportGenerationException, CurrencyConversionException;
+	
+	/**
+	 * Produces a report with the given arguments and writes it to the given sink.
+	 * 
+	 * @param reportDate the report date
+	 * @param country the country of the products
+	 * @param results the products to be included in the report
+	 * @param sink the destination of the report
+	 * @throws ReportGenerationException if an error occurred while producing or writing the report
+	 * @throws CurrencyConversionException if an error occurred while obtaining the conversion rate
+	 */
+	public void generate(Calendar reportDate, Country country, Iterable<Product> results, IReportSink sink) throws ReportGenerationException, CurrencyConversionException;
 }
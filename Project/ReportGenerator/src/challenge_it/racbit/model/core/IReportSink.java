@@ -0,0 +1,26 @@
+package challenge_it.racbit.model.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Specifies the contract to be implemented by all the destinations of the generated reports
+ * (e.g. a directory, a stream or a memory buffer).
+ */
+public interface IReportSink {
+
+	/**
+	 * The size of the buffers used to write the reports
+	 */
+	public static final int BUFFER_SIZE = 256 * 1024;
+
+	/**
+	 * Opens the stream where a report is written. The report is complete when the
+	 * stream is closed, which is always done by the report generator.
+	 * 
+	 * @param reportName The name given to the report by its generator (e.g. the file name)
+	 * @return the stream where the report is written
+	 * @throws IOException if the destination of the report can't be opened
+	 */
+	public OutputStream open(String reportName) throws IOException;
+}
@@ -1,15 +1,24 @@
 package challenge_it.racbit.model.core;
 
 import java.util.Date;
+import java.util.Objects;
 
+import challenge_it.racbit.model.core.base.NameDictionary;
 import challenge_it.racbit.model.core.base.Property;
 import challenge_it.racbit.model.core.base.PropertyBag;
+import challenge_it.racbit.model.core.base.PropertySchema;
 import challenge_it.racbit.model.core.base.StrongTypedPropertyBagBase;
 
 /**
  * Strong type implementation of a {@link PropertyBag} that represents products to 
  * be included in generated reports.
  * 
+ * The product's values are kept in primitive fields (the enumerations as their ordinals),
+ * since they are read many times while the reports are generated. The property bag is
+ * only built when the properties are iterated. The broker, location and supplier are kept
+ * as their ids in the {@link NameDictionary}, so each distinct name is kept once and the
+ * products are compared by int.
+ * 
  * @author Paulo Pereira
  */
 public final class Product extends StrongTypedPropertyBagBase {
@@ -32,17 +41,56 @@ public final class Product extends StrongTypedPropertyBagBase {
 	public static enum SupplierType { UNKNOWN, TRADITIONAL, LOW_COST }
 	
 	/**
-	 * Contains the product's properties 
+	 * The enumeration values, indexed by ordinal
 	 */
-	private final PropertyBag _properties;
+	private static final InsurancePackage[] INSURANCE_PACKAGES = InsurancePackage.values();
+	private static final Group[] GROUPS = Group.values();
+	private static final SupplierType[] SUPPLIER_TYPES = SupplierType.values();
 	
 	/**
-	 * {@inheritDoc}
+	 * The ids of the product's broker, location and supplier {@see NameDictionary}
+	 */
+	private final int _broker, _location, _supplier;
+	
+	/**
+	 * The product's price
+	 */
+	private final double _price;
+	
+	/**
+	 * The product's rate start date, in milliseconds since 1970-01-01 
+	 */
+	private final long _startDate;
+	
+	/**
+	 * The product's rate number of days
+	 */
+	private final int _numberOfDays;
+	
+	/**
+	 * The ordinals of the product's supplier type, group and insurance package
+	 */
+	private final byte _supplierType, _group, _insurance;
+	
+	/**
+	 * Builds the bag with the product's properties. The bag is not kept, as it is only
+	 * needed when the properties are iterated.
 	 */
 	@Override
 	protected PropertyBag propertyBag() 
 	{
-		return _properties;
+		return PropertyBag.getBuilder(SCHEMA)
+						.add(
+							Property.newInstance(BROKER, getBroker()),
+							Property.newInstance(LOCATION, getLocation()),
+							Property.newInstance(SUPPLIER, getSupplier()),
+							Property.newInstance(SUPPLIER_TYPE, getSupplierType()),
+							Property.newInstance(GROUP, getGroup()),
+							Property.newInstance(PRICE, _price),
+							Property.newInstance(INSURANCE, getInsurancePackage()),
+							Property.newInstance(START_DATE, getStartDate()),
+							Property.newInstance(DAYS_COUNT, _numberOfDays))
+						.build();
 	}
 
 	/**
@@ -52,6 +100,12 @@ public final class Product extends StrongTypedPropertyBagBase {
 			GROUP = "group", PRICE = "price", INSURANCE = "insurance",
 			START_DATE = "start", DAYS_COUNT = "countDays";
 
+	/**
+	 * The shape of the product's property bags, shared by all products
+	 */
+	private static final PropertySchema SCHEMA = PropertySchema.of(BROKER, LOCATION, SUPPLIER, SUPPLIER_TYPE, 
+			GROUP, PRICE, INSURANCE, START_DATE, DAYS_COUNT);
+
 	/**
 	 * Creates an instance with the given arguments.
 	 * 
@@ -72,18 +126,43 @@ public final class Product extends StrongTypedPropertyBagBase {
 		if(supplier == null || supplierType == null || group == null || insurance == null || startDate == null)
 			throw new NullPointerException();
 		
-		_properties = PropertyBag.getBuilder()
-						.add(
-							Property.newInstance(BROKER, broker),
-							Property.newInstance(LOCATION, location),
-							Property.newInstance(SUPPLIER, supplier),
-							Property.newInstance(SUPPLIER_TYPE, supplierType),
-							Property.newInstance(GROUP, group),
-							Property.newInstance(PRICE, price),
-							Property.newInstance(INSURANCE, insurance),
-							Property.newInstance(START_DATE, startDate),
-							Property.newInstance(DAYS_COUNT, numberOfDays))
-						.build();
+		_broker = NameDictionary.getId(broker);
+		_location = NameDictionary.getId(location);
+		_supplier = NameDictionary.getId(supplier);
+		_supplierType = (byte) supplierType.ordinal();
+		_group = (byte) group.ordinal();
+		_price = price;
+		_insurance = (byte) insurance.ordinal();
+		_startDate = startDate.getTime();
+		_numberOfDays = numberOfDays;
+	}
+	
+	/**
+	 * Creates an instance with the given values, already validated (e.g. the values of a 
+	 * {@link ProductBatch} row).
+	 * 
+	 * @param broker The id of the product broker
+	 * @param location The id of the product location (city)
+	 * @param supplier The id of the product supplier
+	 * @param supplierType The ordinal of the product supplier type
+	 * @param group The ordinal of the product group
+	 * @param price The product price
+	 * @param insurance The ordinal of the product insurance package
+	 * @param startDate The product's rate start date, in milliseconds since 1970-01-01
+	 * @param numberOfDays The product's rate number of days
+	 */
+	Product(int broker, int location, int supplier, byte supplierType, byte group, 
+			double price, byte insurance, long startDate, int numberOfDays)
+	{
+		_broker = broker;
+		_location = location;
+		_supplier = supplier;
+		_supplierType = supplierType;
+		_group = group;
+		_price = price;
+		_insurance = insurance;
+		_startDate = startDate;
+		_numberOfDays = numberOfDays;
 	}
 	
 	/**
@@ -93,7 +172,17 @@ public final class Product extends StrongTypedPropertyBagBase {
 	 */
 	public String getBroker()
 	{
-		return (String) _properties.get(BROKER).getValue().get();
+		return NameDictionary.getName(_broker);
+	}
+	
+	/**
+	 * Gets the id of the product broker.
+	 * 
+	 * @return The id of the product broker, or {@link NameDictionary#NO_ID} if it has none
+	 */
+	public int getBrokerId()
+	{
+		return _broker;
 	}
 	
 	/**
@@ -103,7 +192,17 @@ public final class Product extends StrongTypedPropertyBagBase {
 	 */
 	public String getLocation()
 	{
-		return (String) _properties.get(LOCATION).getValue().get();
+		return NameDictionary.getName(_location);
+	}
+	
+	/**
+	 * Gets the id of the product location.
+	 * 
+	 * @return The id of the product location, or {@link NameDictionary#NO_ID} if it has none
+	 */
+	public int getLocationId()
+	{
+		return _location;
 	}
 
 	/**
@@ -113,7 +212,17 @@ public final class Product extends StrongTypedPropertyBagBase {
 	 */
 	public String getSupplier()
 	{
-		return (String) _properties.get(SUPPLIER).getValue().get();
+		return NameDictionary.getName(_supplier);
+	}
+	
+	/**
+	 * Gets the id of the product supplier.
+	 * 
+	 * @return The id of the product supplier
+	 */
+	public int getSupplierId()
+	{
+		return _supplier;
 	}
 
 	/**
@@ -123,7 +232,7 @@ public final class Product extends StrongTypedPropertyBagBase {
 	 */
 	public SupplierType getSupplierType()
 	{
-		return (SupplierType) _properties.get(SUPPLIER_TYPE).getValue().get();
+		return SUPPLIER_TYPES[_supplierType];
 	}
 	
 	/**
@@ -133,7 +242,7 @@ public final class Product extends StrongTypedPropertyBagBase {
 	 */
 	public Group getGroup()
 	{
-		return (Group) _properties.get(GROUP).getValue().get();
+		return GROUPS[_group];
 	}
 
 	/**
@@ -143,7 +252,7 @@ public final class Product extends StrongTypedPropertyBagBase {
 	 */
 	public double getPrice()
 	{
-		return (Double) _properties.get(PRICE).getValue().get();
+		return _price;
 	}
 	
 	/**
@@ -153,17 +262,17 @@ public final class Product extends StrongTypedPropertyBagBase {
 	 */
 	public InsurancePackage getInsurancePackage()
 	{
-		return (InsurancePackage) _properties.get(INSURANCE).getValue().get();
+		return INSURANCE_PACKAGES[_insurance];
 	}
 	
 	/**
-	 * Gets the product's rate start date.
+	 * Gets the product's rate start date. Each call returns a new instance.
 	 * 
 	 * @return The product's rate start date
 	 */
 	public Date getStartDate()
 	{
-		return (Date) _properties.get(START_DATE).getValue().get();
+		return new Date(_startDate);
 	}
 
 	/**
@@ -173,7 +282,45 @@ public final class Product extends StrongTypedPropertyBagBase {
 	 */
 	public int getNumberOfDays()
 	{
-		return (Integer) _properties.get(DAYS_COUNT).getValue().get();
+		return _numberOfDays;
+	}
+
+	/**
+	 * Gets the ordinals of the product's supplier type, group and insurance package, and
+	 * the start date in milliseconds, without converting them.
+	 */
+	byte getSupplierTypeOrdinal() { return _supplierType; }
+	byte getGroupOrdinal() { return _group; }
+	byte getInsuranceOrdinal() { return _insurance; }
+	long getStartTime() { return _startDate; }
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Two products are equal if all their properties are equal.
+	 */
+	@Override
+	public boolean equals(Object other)
+	{
+		boolean result = false;
+		if (other instanceof Product) 
+		{
+			Product that = (Product) other;
+			result = (this == that) || (Double.compare(_price, that._price) == 0 && _startDate == that._startDate 
+					&& _numberOfDays == that._numberOfDays && _group == that._group && _insurance == that._insurance 
+					&& _supplierType == that._supplierType && _supplier == that._supplier
+					&& _broker == that._broker && _location == that._location);
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override 
+	public int hashCode()
+	{
+		return Objects.hash(_broker, _location, _supplier, _supplierType, _group, _price, _insurance, _startDate, _numberOfDays);
 	}
 
 	/**
@@ -0,0 +1,391 @@
+package challenge_it.racbit.model.core;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import challenge_it.racbit.model.core.Product.Group;
+import challenge_it.racbit.model.core.Product.InsurancePackage;
+import challenge_it.racbit.model.core.Product.SupplierType;
+import challenge_it.racbit.model.core.base.NameDictionary;
+
+/**
+ * Class whose instances hold a large set of products in columns: one primitive array
+ * per product value, indexed by row. The broker, supplier and location names are kept
+ * as their ids in the {@link NameDictionary}, as in the products.
+ *
+ * The report generators read the batches through a {@link Cursor}, a reusable view of the
+ * rows that creates no objects, and keep the rows of the products they aggregate instead
+ * of the products; the sort and minimum kernels run directly on the columns. A batch is
+ * also an {@code Iterable<Product>}, so it can be given where the products are expected
+ * (e.g. the report filters), but its iterator creates a product per row and is only kept
+ * as an adapter for that code.
+ *
+ * Instances are not thread-safe while products are being added.
+ */
+public final class ProductBatch implements Iterable<Product>
+{
+	/**
+	 * The enumeration values, indexed by ordinal
+	 */
+	private static final InsurancePackage[] INSURANCE_PACKAGES = InsurancePackage.values();
+	private static final Group[] GROUPS = Group.values();
+	private static final SupplierType[] SUPPLIER_TYPES = SupplierType.values();
+
+	/**
+	 * The broker id that selects all the products, in the minimum kernel
+	 */
+	private static final int ALL_BROKERS = Integer.MIN_VALUE;
+
+	/**
+	 * Class whose instances are reusable views of the rows of the batch. A cursor is
+	 * positioned before the first row when created, and moved by {@link #next()} or
+	 * {@link #moveTo(int)}.
+	 */
+	public final class Cursor
+	{
+		/**
+		 * The current row
+		 */
+		private int _row = -1;
+
+		/**
+		 * Prevents instantiation outside the batch
+		 */
+		private Cursor() { }
+
+		/**
+		 * Moves to the next row.
+		 *
+		 * @return {@literal true} if there is one
+		 */
+		public boolean next() { return ++_row < _size; }
+
+		/**
+		 * Moves to the given row.
+		 *
+		 * @param row The row
+		 * @return The cursor instance, thereby allowing method call chaining
+		 * @throws IndexOutOfBoundsException if there is no such row
+		 */
+		public Cursor moveTo(int row)
+		{
+			checkRow(row);
+			_row = row;
+			return this;
+		}
+
+		/**
+		 * Gets the values of the current row, as the {@link Product} getters, and the ids of
+		 * its names {@see NameDictionary#getName(int)}.
+		 */
+		public int getRow() { return _row; }
+		public int getBrokerId() { return _brokers[_row]; }
+		public String getBroker() { return NameDictionary.getName(_brokers[_row]); }
+		public int getLocationId() { return _locations[_row]; }
+		public String getLocation() { return NameDictionary.getName(_locations[_row]); }
+		public int getSupplierId() { return _suppliers[_row]; }
+		public String getSupplier() { return NameDictionary.getName(_suppliers[_row]); }
+		public SupplierType getSupplierType() { return SUPPLIER_TYPES[_supplierTypes[_row]]; }
+		public Group getGroup() { return GROUPS[_groups[_row]]; }
+		public double getPrice() { return _prices[_row]; }
+		public InsurancePackage getInsurancePackage() { return INSURANCE_PACKAGES[_insurances[_row]]; }
+		public long getStartTime() { return _startDates[_row]; }
+		public int getNumberOfDays() { return _days[_row]; }
+
+		/**
+		 * Creates the product of the current row.
+		 *
+		 * @return The product instance
+		 */
+		public Product toProduct() { return get(_row); }
+	}
+
+	/**
+	 * The columns
+	 */
+	private double[] _prices;
+	private int[] _days, _brokers, _suppliers, _locations;
+	private byte[] _groups, _insurances, _supplierTypes;
+	private long[] _startDates;
+
+	/**
+	 * The number of rows
+	 */
+	private int _size;
+
+	/**
+	 * Creates an empty batch.
+	 */
+	public ProductBatch()
+	{
+		this(16);
+	}
+
+	/**
+	 * Creates an empty batch with room for the given number of products.
+	 *
+	 * @param capacity The initial capacity
+	 */
+	public ProductBatch(int capacity)
+	{
+		capacity = Math.max(capacity, 1);
+
+		_prices = new double[capacity];
+		_days = new int[capacity];
+		_brokers = new int[capacity];
+		_suppliers = new int[capacity];
+		_locations = new int[capacity];
+		_groups = new byte[capacity];
+		_insurances = new byte[capacity];
+		_supplierTypes = new byte[capacity];
+		_startDates = new long[capacity];
+	}
+
+	/**
+	 * Gets the batch of the given products.
+	 *
+	 * @param products The products
+	 * @return The products, if they are a batch, or a new batch with them
+	 */
+	public static ProductBatch of(Iterable<Product> products)
+	{
+		return products instanceof ProductBatch ? (ProductBatch) products : new ProductBatch().addAll(products);
+	}
+
+	/**
+	 * Adds a product.
+	 *
+	 * @param product The product
+	 * @return The batch instance, thereby allowing method call chaining
+	 */
+	public ProductBatch add(Product product)
+	{
+		return add(product.getBrokerId(), product.getLocationId(), product.getSupplierId(), product.getSupplierTypeOrdinal(),
+				product.getGroupOrdinal(), product.getPrice(), product.getInsuranceOrdinal(), product.getStartTime(), product.getNumberOfDays());
+	}
+
+	/**
+	 * Adds the products.
+	 *
+	 * @param products The products
+	 * @return The batch instance, thereby allowing method call chaining
+	 */
+	public ProductBatch addAll(Iterable<Product> products)
+	{
+		for(Product product : products)
+			add(product);
+		return this;
+	}
+
+	/**
+	 * Adds a product with the given values.
+	 *
+	 * @param broker The product broker
+	 * @param location The product location (city)
+	 * @param supplier The product supplier
+	 * @param supplierType The product supplier type
+	 * @param group The product group
+	 * @param price The product price
+	 * @param insurance The product insurance package
+	 * @param startDate The product's rate start date
+	 * @param numberOfDays The product's rate number of days
+	 * @return The batch instance, thereby allowing method call chaining
+	 * @throws NullPointerException if any argument is {@literal null}, except the broker and location
+	 */
+	public ProductBatch add(String broker, String location, String supplier, SupplierType supplierType, Group group,
+			double price, InsurancePackage insurance, Date startDate, int numberOfDays)
+	{
+		if(supplier == null || supplierType == null || group == null || insurance == null || startDate == null)
+			throw new NullPointerException();
+
+		return add(NameDictionary.getId(broker), NameDictionary.getId(location), NameDictionary.getId(supplier),
+				(byte) supplierType.ordinal(), (byte) group.ordinal(), price,
+				(byte) insurance.ordinal(), startDate.getTime(), numberOfDays);
+	}
+
+	/**
+	 * Adds a row.
+	 */
+	private ProductBatch add(int broker, int location, int supplier, byte supplierType, byte group,
+			double price, byte insurance, long startDate, int numberOfDays)
+	{
+		if(_size == _prices.length)
+			grow();
+
+		_brokers[_size] = broker;
+		_locations[_size] = location;
+		_suppliers[_size] = supplier;
+		_supplierTypes[_size] = supplierType;
+		_groups[_size] = group;
+		_prices[_size] = price;
+		_insurances[_size] = insurance;
+		_startDates[_size] = startDate;
+		_days[_size] = numberOfDays;
+		_size++;
+		return this;
+	}
+
+	/**
+	 * Gets the number of products.
+	 *
+	 * @return The number of rows
+	 */
+	public int size() { return _size; }
+
+	/**
+	 * Creates the product of a row.
+	 *
+	 * @param row The row
+	 * @return The product instance
+	 * @throws IndexOutOfBoundsException if there is no such row
+	 */
+	public Product get(int row)
+	{
+		checkRow(row);
+		return new Product(_brokers[row], _locations[row], _suppliers[row], _supplierTypes[row],
+				_groups[row], _prices[row], _insurances[row], _startDates[row], _days[row]);
+	}
+
+	/**
+	 * Creates a cursor positioned before the first row.
+	 *
+	 * @return The cursor instance
+	 */
+	public Cursor cursor()
+	{
+		return new Cursor();
+	}
+
+	/**
+	 * Gets the rows ordered by ascending price. Rows with the same price keep their order.
+	 *
+	 * @return The rows
+	 */
+	public int[] sortByPrice()
+	{
+		int[] rows = new int[_size];
+		for(int row = 0; row < _size; row++)
+			rows[row] = row;
+
+		mergeSort(rows, new int[_size], 0, _size);
+		return rows;
+	}
+
+	/**
+	 * Gets the minimum price of each group.
+	 *
+	 * @return The minimum prices, indexed by {@link Group} ordinal, with NaN for the groups
+	 * without products
+	 */
+	public double[] getMinimumPrices()
+	{
+		return getMinimumPrices(ALL_BROKERS);
+	}
+
+	/**
+	 * Gets the minimum price of each group, for the products of a broker.
+	 *
+	 * @param brokerId The id of the broker {@see NameDictionary#getId(String)}
+	 * @return The minimum prices, indexed by {@link Group} ordinal, with NaN for the groups
+	 * without products
+	 */
+	public double[] getMinimumPrices(int brokerId)
+	{
+		double[] minimums = new double[GROUPS.length];
+		Arrays.fill(minimums, Double.POSITIVE_INFINITY);
+
+		for(int row = 0; row < _size; row++)
+		{
+			if(brokerId == ALL_BROKERS || _brokers[row] == brokerId)
+			{
+				int group = _groups[row];
+				if(_prices[row] < minimums[group])
+					minimums[group] = _prices[row];
+			}
+		}
+
+		for(int group = 0; group < minimums.length; group++)
+			if(minimums[group] == Double.POSITIVE_INFINITY)
+				minimums[group] = Double.NaN;
+		return minimums;
+	}
+
+	/**
+	 * Gets an iterator that creates the products of the rows. Kept for the code that takes
+	 * the products; the report generators use a {@link Cursor}.
+	 *
+	 * @return The iterator instance
+	 */
+	@Override
+	public Iterator<Product> iterator()
+	{
+		return new Iterator<Product>() {
+			private int _row = 0;
+
+			public boolean hasNext() { return _row < _size; }
+
+			public Product next()
+			{
+				if(!hasNext()) throw new NoSuchElementException();
+				return get(_row++);
+			}
+
+			public void remove() { throw new UnsupportedOperationException(); }
+		};
+	}
+
+	/**
+	 * Checks that a row exists.
+	 */
+	private void checkRow(int row)
+	{
+		if(row < 0 || row >= _size)
+			throw new IndexOutOfBoundsException("Row " + row + " of " + _size);
+	}
+
+	/**
+	 * Grows the columns by half.
+	 */
+	private void grow()
+	{
+		int capacity = _prices.length + Math.max(_prices.length >> 1, 1);
+
+		_prices = Arrays.copyOf(_prices, capacity);
+		_days = Arrays.copyOf(_days, capacity);
+		_brokers = Arrays.copyOf(_brokers, capacity);
+		_suppliers = Arrays.copyOf(_suppliers, capacity);
+		_locations = Arrays.copyOf(_locations, capacity);
+		_groups = Arrays.copyOf(_groups, capacity);
+		_insurances = Arrays.copyOf(_insurances, capacity);
+		_supplierTypes = Arrays.copyOf(_supplierTypes, capacity);
+		_startDates = Arrays.copyOf(_startDates, capacity);
+	}
+
+	/**
+	 * Sorts a range of rows by price, keeping the order of the rows with the same price.
+	 */
+	private void mergeSort(int[] rows, int[] buffer, int from, int to)
+	{
+		if(to - from < 2)
+			return;
+
+		int middle = (from + to) >>> 1;
+		mergeSort(rows, buffer, from, middle);
+		mergeSort(rows, buffer, middle, to);
+
+		if(Double.compare(_prices[rows[middle - 1]], _prices[rows[middle]]) <= 0)
+			return;
+
+		System.arraycopy(rows, from, buffer, from, to - from);
+
+		for(int i = from, left = from, right = middle; i < to; i++)
+		{
+			if(right >= to || (left < middle && Double.compare(_prices[buffer[left]], _prices[buffer[right]]) <= 0))
+				rows[i] = buffer[left++];
+			else
+				rows[i] = buffer[right++];
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package challenge_it.racbit.model.core.base;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dictionary of the names that repeat across many products (e.g. the brokers, suppliers
+ * and locations), which assigns each distinct name a dense int id, starting at 0. The
+ * products and the structures that aggregate them keep and compare the ids, and the
+ * names are obtained from the ids only when written.
+ *
+ * Ids are never reassigned. The dictionary can be saved to a file and loaded when the
+ * application starts, so the names keep their ids across runs. Lookups are lock-free;
+ * adding a name is synchronized.
+ */
+public final class NameDictionary
+{
+	/**
+	 * The id of the {@literal null} name
+	 */
+	public static final int NO_ID = -1;
+
+	/**
+	 * Identifies the files ("RXND")
+	 */
+	private static final int MAGIC = 0x52584E44;
+
+	/**
+	 * The version of the file format
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Contains the id of each name.
+	 */
+	private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<String, Integer>();
+
+	/**
+	 * Guards the additions.
+	 */
+	private static final Object LOCK = new Object();
+
+	/**
+	 * The names, by id. Replaced by a larger copy when full.
+	 */
+	private static volatile String[] NAMES = new String[256];
+
+	/**
+	 * The number of names. Written after the name is stored, so the names of the ids
+	 * below it are visible to the readers.
+	 */
+	private static volatile int SIZE;
+
+	/**
+	 * Prevents instantiation.
+	 */
+	private NameDictionary() { }
+
+	/**
+	 * Gets the id of a name, adding the name if needed.
+	 *
+	 * @param name The name
+	 * @return The id, or {@link #NO_ID} if {@code name} is {@literal null}
+	 */
+	public static int getId(String name)
+	{
+		if(name == null)
+			return NO_ID;
+
+		Integer id = IDS.get(name);
+		return id != null ? id : add(name);
+	}
+
+	/**
+	 * Gets the id of a name, without adding it.
+	 *
+	 * @param name The name
+	 * @return The id, or {@link #NO_ID} if the name has no id
+	 */
+	public static int indexOf(String name)
+	{
+		Integer id = name == null ? null : IDS.get(name);
+		return id == null ? NO_ID : id;
+	}
+
+	/**
+	 * Gets the name with the given id.
+	 *
+	 * @param id The id
+	 * @return The name, or {@literal null} for {@link #NO_ID}
+	 * @throws IndexOutOfBoundsException if there is no such id
+	 */
+	public static String getName(int id)
+	{
+		if(id == NO_ID)
+			return null;
+
+		if(id < 0 || id >= SIZE)
+			throw new IndexOutOfBoundsException("No name with id " + id);
+
+		return NAMES[id];
+	}
+
+	/**
+	 * Gets the number of names.
+	 *
+	 * @return The number of ids
+	 */
+	public static int size() { return SIZE; }
+
+	/**
+	 * Loads the names of a file written by {@link #save(File)}, keeping their ids. The
+	 * names already in the dictionary must have the same ids in the file, which is the
+	 * case when the file was saved after them (e.g. it is loaded when the application
+	 * starts, before any product is created).
+	 *
+	 * @param file The file
+	 * @return The number of names added
+	 * @throws IOException if the file can't be read, or a name has another id in the file
+	 */
+	public static int load(File file) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+		try
+		{
+			if(in.readInt() != MAGIC)
+				throw new IOException("Not a name dictionary: " + file);
+
+			if(in.readInt() != VERSION)
+				throw new IOException("Unsupported name dictionary version: " + file);
+
+			int count = in.readInt(), added = 0;
+
+			synchronized(LOCK)
+			{
+				for(int id = 0; id < count; id++)
+				{
+					String name = in.readUTF();
+
+					if(id < SIZE)
+					{
+						if(!NAMES[id].equals(name))
+							throw new IOException("The name " + name + " has another id in " + file);
+					}
+					else if(add(name) != id)
+						throw new IOException("The name " + name + " has another id in " + file);
+					else
+						added++;
+				}
+			}
+			return added;
+		}
+		catch(EOFException e)
+		{
+			throw new IOException("Truncated name dictionary: " + file, e);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the names to a file, in id order. The file is replaced at once, so readers
+	 * see either the previous or the new names.
+	 *
+	 * @param file The file
+	 * @throws IOException if the file can't be written
+	 */
+	public static void save(File file) throws IOException
+	{
+		String[] names;
+		int size;
+
+		synchronized(LOCK)
+		{
+			names = NAMES;
+			size = SIZE;
+		}
+
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(size);
+
+			for(int id = 0; id < size; id++)
+				out.writeUTF(names[id]);
+		}
+		finally
+		{
+			out.close();
+		}
+
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Adds a name, unless another thread added it first.
+	 *
+	 * @return The id of the name
+	 */
+	private static int add(String name)
+	{
+		synchronized(LOCK)
+		{
+			Integer id = IDS.get(name);
+			if(id != null)
+				return id;
+
+			int size = SIZE;
+			String[] names = NAMES;
+
+			if(size == names.length)
+				NAMES = names = Arrays.copyOf(names, size + (size >> 1));
+
+			names[size] = name;
+			SIZE = size + 1;
+			IDS.put(name, size);
+			return size;
+		}
+	}
+}
@@ -22,8 +22,8 @@ public final class Property<T>
 	/**
 	 * Factory method that produces a property instance with the given parameters.
 	 * 
-	 * TODO: Since instances are immutable, they may be safely shared, and hence cached to
-	 * reduce working set size.
+	 * Since instances are immutable, they may be safely shared: the properties with 
+	 * low-cardinality values are cached to reduce working set size. {@see PropertyCache}
 	 * 
 	 * @param name The property's name
 	 * @param value The property's value
@@ -35,7 +35,20 @@ public final class Property<T>
 	public static <T> Property<T> newInstance(String name, T value)
 	{
 		checkArgument(!(name=name.trim()).isEmpty(), "Empty string is an illegal property name");
-		return new Property<T>(name, value); 
+		
+		if(!PropertyCache.isCacheable(value))
+			return new Property<T>(name, value);
+		
+		// A cached property has a value equal to the given one, hence of the same class
+		@SuppressWarnings("unchecked")
+		Property<T> cached = (Property<T>) PropertyCache.get(name, value);
+		if(cached == null)
+		{
+			@SuppressWarnings("unchecked")
+			Property<T> added = (Property<T>) PropertyCache.add(new Property<T>(name, value));
+			cached = added;
+		}
+		return cached;
 	}
 	
 	/**
@@ -1,5 +1,7 @@
 package challenge_it.racbit.model.core.base;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -10,6 +12,11 @@ import java.util.NoSuchElementException;
  * Class whose instances represent property bags. Instances are immutable, 
  * meaning, the set of properties never changes.
  * 
+ * The properties are placed in the slots of the bag's {@link PropertySchema},
+ * which is shared by all the bags with the same property names, so a property
+ * is found by name with a hash lookup, or by {@link PropertySchema.Key} with
+ * an array index.
+ * 
  * @author Paulo Pereira
  */
 public final class PropertyBag implements Iterable<Property<?>> {
@@ -29,13 +36,21 @@ public final class PropertyBag implements Iterable<Property<?>> {
 		 */
 		private List<Property<?>> _properties;
 	
+		/**
+		 * The expected schema of the property bag, or {@literal null}.
+		 */
+		private final PropertySchema _schema;
+	
 		/**
 		 * Initiates a builder instance. Each instance can only be used to build
 		 * one property bag.
+		 * 
+		 * @param schema The expected schema of the property bag, or {@literal null}
 		 */
-		private Builder()
+		private Builder(PropertySchema schema)
 		{
-			_properties = new ArrayList<Property<?>>();
+			_properties = new ArrayList<Property<?>>(schema == null ? 10 : schema.size());
+			_schema = schema;
 		}
 		
 		/**
@@ -67,7 +82,8 @@ public final class PropertyBag implements Iterable<Property<?>> {
 		{
 			if(_properties == null) throw new IllegalStateException();
 			Property<?>[] _props = _properties.toArray(new Property<?>[_properties.size()]);
-			PropertyBag newInstance = new PropertyBag(_props);
+			PropertySchema schema = _schema != null && _schema.matches(_props) ? _schema : PropertySchema.forProperties(_props);
+			PropertyBag newInstance = new PropertyBag(schema, _props);
 			_properties = null;
 			return newInstance;
 		}
@@ -80,7 +96,20 @@ public final class PropertyBag implements Iterable<Property<?>> {
 	 */
 	public static Builder getBuilder()
 	{
-		return new Builder();
+		return new Builder(null);
+	}
+	
+	/**
+	 * Factory method that produces a property bag builder for bags of a known
+	 * shape. When the added properties have the names of the schema, in the
+	 * same order, the bag uses it without computing its schema.
+	 * 
+	 * @param schema The expected schema of the property bag
+	 * @return A new builder instance
+	 */
+	public static Builder getBuilder(PropertySchema schema)
+	{
+		return new Builder(schema);
 	}
 
 	/**
@@ -88,17 +117,34 @@ public final class PropertyBag implements Iterable<Property<?>> {
 	 */
 	private final Property<?>[] _properties; 
 	
+	/**
+	 * The slots of the properties.
+	 */
+	private final PropertySchema _schema;
+	
 	/**
 	 * Initiates an instance with the given set of properties. The received 
 	 * array is not copied and, for that reason, the constructor is private.
 	 * {@see PropertyBag.Builder}
 	 * 
+	 * @param schema The slots of the properties
 	 * @param properties The properties set
 	 */
-	private PropertyBag(Property<?>... properties)
+	private PropertyBag(PropertySchema schema, Property<?>... properties)
 	{
+		_schema = schema;
 		_properties = properties;
 	}
+	
+	/**
+	 * Gets the schema of the bag.
+	 * 
+	 * @return The schema instance
+	 */
+	public PropertySchema getSchema()
+	{
+		return _schema;
+	}
 
 	/**
 	 * Gets the property with the given name. If two properties with the same 
@@ -111,10 +157,25 @@ public final class PropertyBag implements Iterable<Property<?>> {
 	 */
 	public Property<?> get(String name)
 	{
-		for(Property<?> property : _properties)
-			if(name.equals(property.getName()))
-				return property;
-		return null;
+		int slot = _schema.indexOf(checkNotNull(name));
+		return slot < 0 ? null : _properties[slot];
+	}
+	
+	/**
+	 * Gets the property referred by the given key. 
+	 * 
+	 * @param key The key, obtained from the bag's schema or from a schema
+	 * with a property of the same name
+	 * @return The property instance, or {@literal null} if the product does
+	 * not contain a property with the key's name.
+	 * @throws NullPointerException if {@code key} is {@literal null}
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Property<T> get(PropertySchema.Key<T> key)
+	{
+		if(key.getSchema() == _schema)
+			return (Property<T>) _properties[key.getSlot()];
+		return (Property<T>) get(key.getName());
 	}
 	
 	/**
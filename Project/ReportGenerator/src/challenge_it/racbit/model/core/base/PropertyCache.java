@@ -0,0 +1,183 @@
+package challenge_it.racbit.model.core.base;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the {@link Property} instances with low-cardinality values, used by
+ * {@link Property#newInstance(String, Object)} to share the instances that repeat
+ * across many property bags (e.g. the same broker, group or number of days in
+ * thousands of products).
+ *
+ * Only the properties whose value is {@literal null}, an enum constant, a boolean,
+ * a small integer or a short string are cached. The cache is bounded: once it holds
+ * {@link #MAX_SIZE} properties, new ones are no longer added, but the cached ones are
+ * still shared. Instances are thread-safe.
+ */
+public final class PropertyCache
+{
+	/**
+	 * The maximum number of cached properties
+	 */
+	public static final int MAX_SIZE = 8192;
+
+	/**
+	 * The maximum length of the cached string values
+	 */
+	public static final int MAX_STRING_LENGTH = 64;
+
+	/**
+	 * The range of the cached integer values
+	 */
+	public static final int MIN_INTEGER = -128, MAX_INTEGER = 1024;
+
+	/**
+	 * Used as the key of the {@literal null} values, which can't be map keys.
+	 */
+	private static final Object NULL = new Object();
+
+	/**
+	 * Contains the properties, by name and value.
+	 */
+	private static final ConcurrentMap<String, ConcurrentMap<Object, Property<?>>> PROPERTIES =
+			new ConcurrentHashMap<String, ConcurrentMap<Object, Property<?>>>();
+
+	/**
+	 * The number of cached properties, plus the slots reserved by the additions in progress.
+	 */
+	private static final AtomicInteger SIZE = new AtomicInteger();
+
+	/**
+	 * The number of requests answered by the cache and the ones of cacheable properties
+	 * that were not cached.
+	 */
+	private static final AtomicLong HITS = new AtomicLong(), MISSES = new AtomicLong();
+
+	/**
+	 * Prevents instantiation.
+	 */
+	private PropertyCache() { }
+
+	/**
+	 * Checks if the properties with the given value are cached.
+	 *
+	 * @param value The property's value
+	 * @return {@literal true} if the value has low cardinality
+	 */
+	static boolean isCacheable(Object value)
+	{
+		if(value == null || value instanceof Enum<?> || value instanceof Boolean)
+			return true;
+
+		if(value instanceof Integer)
+		{
+			int i = (Integer) value;
+			return i >= MIN_INTEGER && i <= MAX_INTEGER;
+		}
+
+		return value instanceof String && ((String) value).length() <= MAX_STRING_LENGTH;
+	}
+
+	/**
+	 * Gets the cached property with the given parameters.
+	 *
+	 * @param name The property's name
+	 * @param value The property's value, which must be cacheable
+	 * @return The property instance, or {@literal null} if it isn't cached
+	 */
+	static Property<?> get(String name, Object value)
+	{
+		ConcurrentMap<Object, Property<?>> values = PROPERTIES.get(name);
+		Property<?> property = values == null ? null : values.get(value == null ? NULL : value);
+
+		if(property != null)
+			HITS.incrementAndGet();
+		else
+			MISSES.incrementAndGet();
+
+		return property;
+	}
+
+	/**
+	 * Adds a property to the cache, unless the cache is full.
+	 *
+	 * @param property The property, whose value must be cacheable
+	 * @return The cached property with the same name and value, which is the given one
+	 * unless another thread added it first
+	 */
+	static Property<?> add(Property<?> property)
+	{
+		// Reserves a slot first, so concurrent additions can't go over the limit
+		if(SIZE.incrementAndGet() > MAX_SIZE)
+		{
+			SIZE.decrementAndGet();
+			return property;
+		}
+
+		ConcurrentMap<Object, Property<?>> values = PROPERTIES.get(property.getName());
+
+		if(values == null)
+		{
+			ConcurrentMap<Object, Property<?>> added = new ConcurrentHashMap<Object, Property<?>>();
+			values = PROPERTIES.putIfAbsent(property.getName(), added);
+
+			if(values == null)
+				values = added;
+		}
+
+		Object value = property.getValue().orNull();
+		Property<?> cached = values.putIfAbsent(value == null ? NULL : value, property);
+
+		if(cached != null)
+		{
+			SIZE.decrementAndGet();
+			return cached;
+		}
+		return property;
+	}
+
+	/**
+	 * Gets the number of cached properties.
+	 *
+	 * @return The number of properties
+	 */
+	public static int size() { return SIZE.get(); }
+
+	/**
+	 * Gets the number of requests of cacheable properties answered by the cache.
+	 *
+	 * @return The number of hits
+	 */
+	public static long getHitCount() { return HITS.get(); }
+
+	/**
+	 * Gets the number of requests of cacheable properties that were not cached.
+	 *
+	 * @return The number of misses
+	 */
+	public static long getMissCount() { return MISSES.get(); }
+
+	/**
+	 * Gets the ratio of the requests of cacheable properties answered by the cache.
+	 *
+	 * @return The hit rate, from 0 to 1, or 0 if there were no requests
+	 */
+	public static double getHitRate()
+	{
+		long hits = HITS.get(), total = hits + MISSES.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Discards the cached properties and the statistics.
+	 */
+	public static void clear()
+	{
+		PROPERTIES.clear();
+		SIZE.set(0);
+		HITS.set(0);
+		MISSES.set(0);
+	}
+}
@@ -0,0 +1,215 @@
+package challenge_it.racbit.model.core.base;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Class whose instances represent the shape of property bags: the names of their
+ * properties, in order, each one mapped to the index (slot) of the property in the
+ * bags. Instances are immutable and are shared by all the bags with the same shape
+ * {@see PropertySchema#of(String...)}, so the names are mapped to slots only once.
+ *
+ * A property is found by name with a hash lookup, or by a {@link Key} obtained once
+ * from the schema with a plain array index.
+ */
+public final class PropertySchema
+{
+	/**
+	 * Class whose instances are precompiled references to a property of the bags of
+	 * a schema.
+	 *
+	 * @param <T> The type of the property's value
+	 */
+	public static final class Key<T>
+	{
+		/**
+		 * The schema of the bags.
+		 */
+		private final PropertySchema _schema;
+
+		/**
+		 * The property's slot.
+		 */
+		private final int _slot;
+
+		/**
+		 * Creates an instance with the given parameters.
+		 *
+		 * @param schema The schema of the bags
+		 * @param slot The property's slot
+		 */
+		private Key(PropertySchema schema, int slot)
+		{
+			_schema = schema;
+			_slot = slot;
+		}
+
+		/**
+		 * Gets the schema of the bags.
+		 *
+		 * @return The schema
+		 */
+		public PropertySchema getSchema() { return _schema; }
+
+		/**
+		 * Gets the property's slot.
+		 *
+		 * @return The slot
+		 */
+		public int getSlot() { return _slot; }
+
+		/**
+		 * Gets the property's name.
+		 *
+		 * @return The name
+		 */
+		public String getName() { return _schema._names[_slot]; }
+	}
+
+	/**
+	 * Contains the schemas, by list of names.
+	 */
+	private static final ConcurrentMap<List<String>, PropertySchema> SCHEMAS = new ConcurrentHashMap<List<String>, PropertySchema>();
+
+	/**
+	 * Factory method that produces the schema with the given property names.
+	 *
+	 * @param names The property names, in slot order
+	 * @return The schema instance, shared by all calls with the same names
+	 * @throws NullPointerException if any name is {@literal null}
+	 */
+	public static PropertySchema of(String... names)
+	{
+		String[] copy = names.clone();
+		List<String> key = Arrays.asList(copy);
+		PropertySchema schema = SCHEMAS.get(key);
+
+		if(schema == null)
+		{
+			PropertySchema created = new PropertySchema(copy);
+			schema = SCHEMAS.putIfAbsent(key, created);
+
+			if(schema == null)
+				schema = created;
+		}
+		return schema;
+	}
+
+	/**
+	 * The property names, by slot.
+	 */
+	private final String[] _names;
+
+	/**
+	 * The slot of each property name. When a name repeats, the first slot is kept.
+	 */
+	private final Map<String, Integer> _slots;
+
+	/**
+	 * Creates an instance with the given names.
+	 *
+	 * @param names The property names, in slot order
+	 */
+	private PropertySchema(String[] names)
+	{
+		_names = names;
+		_slots = new HashMap<String, Integer>();
+
+		for(int slot = names.length - 1; slot >= 0; slot--)
+			_slots.put(names[slot], slot);
+	}
+
+	/**
+	 * Gets the number of properties.
+	 *
+	 * @return The number of slots
+	 */
+	public int size() { return _names.length; }
+
+	/**
+	 * Gets the name of the property of a slot.
+	 *
+	 * @param slot The slot
+	 * @return The property's name
+	 * @throws IndexOutOfBoundsException if there is no such slot
+	 */
+	public String getName(int slot) { return _names[slot]; }
+
+	/**
+	 * Gets the slot of the property with the given name. If two properties with the same
+	 * name exist, returns the first one.
+	 *
+	 * @param name The property's name
+	 * @return The slot, or -1 if there is no property with the given name
+	 * @throws NullPointerException if {@code name} is {@literal null}
+	 */
+	public int indexOf(String name)
+	{
+		Integer slot = _slots.get(checkNotNull(name));
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * Gets a precompiled reference to the property with the given name.
+	 *
+	 * @param name The property's name
+	 * @return The key instance
+	 * @throws IllegalArgumentException if there is no property with the given name
+	 * @throws NullPointerException if {@code name} is {@literal null}
+	 */
+	public <T> Key<T> getKey(String name)
+	{
+		int slot = indexOf(name);
+		if(slot < 0) throw new IllegalArgumentException("No property named " + name);
+		return new Key<T>(this, slot);
+	}
+
+	/**
+	 * Checks if the given properties have the names of the schema, in the same order.
+	 *
+	 * @param properties The properties
+	 * @return {@literal true} if the properties match the schema
+	 */
+	boolean matches(Property<?>[] properties)
+	{
+		if(properties.length != _names.length)
+			return false;
+
+		for(int slot = 0; slot < _names.length; slot++)
+			if(!_names[slot].equals(properties[slot].getName()))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Gets the schema of the given properties.
+	 *
+	 * @param properties The properties
+	 * @return The shared schema instance
+	 */
+	static PropertySchema forProperties(Property<?>[] properties)
+	{
+		String[] names = new String[properties.length];
+
+		for(int slot = 0; slot < properties.length; slot++)
+			names[slot] = properties[slot].getName();
+		return of(names);
+	}
+
+	/**
+	 * Gets the string representation of the current instance.
+	 *
+	 * @return The string representation of the current instance
+	 */
+	@Override
+	public String toString()
+	{
+		return Arrays.toString(_names);
+	}
+}
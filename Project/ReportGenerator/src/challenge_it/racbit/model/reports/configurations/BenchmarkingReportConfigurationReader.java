@@ -1,38 +1,42 @@
 package challenge_it.racbit.model.reports.configurations;
 
-import org.w3c.dom.Document;
+import javax.xml.stream.XMLStreamException;
 
 public class BenchmarkingReportConfigurationReader extends ConfigurationReader{
 
 	/**
 	 * Reads the XML file and retrieves all the information
 	 * 
-	 * @param doc The representation of the XML file
+	 * @param in The reader of the XML file
 	 * @return an instance of Configuration that has the information read from XML file
+	 * @throws XMLStreamException When the file can't be read or is not valid
 	 */
 	@Override
-	protected Configuration getConfiguration(Document doc) {
-		final int FIRST_IDX = 0;
-		
+	protected Configuration getConfiguration(ConfigurationStreamReader in) throws XMLStreamException {
 		BenchmarkingReportConfiguration configuration = new BenchmarkingReportConfiguration();
 		
-		configuration.setRateCell(getCell(doc.getElementsByTagName("ConversionRate").item(FIRST_IDX)));
-		
-		configuration.setTitleCell(getCell(doc.getElementsByTagName("Title").item(FIRST_IDX)));
-		
-		configuration.setConsultationDateCell(getCell(doc.getElementsByTagName("ConsultationDate").item(FIRST_IDX)));
-		
-		configuration.setHourCell(getCell(doc.getElementsByTagName("Hour").item(FIRST_IDX)));
-		
-		configuration.setPickUpDateCell(getCell(doc.getElementsByTagName("PickUpDate").item(FIRST_IDX)));
-		
-		configuration.setGridValuesFirstCell(getCell(doc.getElementsByTagName("Begin").item(FIRST_IDX)));
-		
-		configuration.setLocationCell(getCell(doc.getElementsByTagName("Location").item(FIRST_IDX)));
-		
-		configuration.setGroupCell(getCell(doc.getElementsByTagName("Group").item(FIRST_IDX)));
-		
-		configuration.setNumberOfDaysCell(getCell(doc.getElementsByTagName("NumberOfDays").item(FIRST_IDX)));
+		while(in.nextElement()){
+			String name = in.getName();
+		
+			if(name.equals("ConversionRate"))
+				configuration.setRateCell(getCell(in));
+			else if(name.equals("Title"))
+				configuration.setTitleCell(getCell(in));
+			else if(name.equals("ConsultationDate"))
+				configuration.setConsultationDateCell(getCell(in));
+			else if(name.equals("Hour"))
+				configuration.setHourCell(getCell(in));
+			else if(name.equals("PickUpDate"))
+				configuration.setPickUpDateCell(getCell(in));
+			else if(name.equals("Begin"))
+				configuration.setGridValuesFirstCell(getCell(in));
+			else if(name.equals("Location"))
+				configuration.setLocationCell(getCell(in));
+			else if(name.equals("Group"))
+				configuration.setGroupCell(getCell(in));
+			else if(name.equals("NumberOfDays"))
+				configuration.setNumberOfDaysCell(getCell(in));
+		}
 		
 		return configuration;
 	}
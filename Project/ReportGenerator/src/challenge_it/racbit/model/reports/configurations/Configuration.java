@@ -6,7 +6,7 @@ import challenge_it.racbit.model.reports.generators.utils.CrossReference;
  * 
  * Represents the content of the XML file, with the configuration to generate a XLSX file.
  * 
- *  @author Ctia Moreira e Joo Taborda
+ *  @author Cátia Moreira e João Taborda
  *
  */
 public abstract class Configuration{
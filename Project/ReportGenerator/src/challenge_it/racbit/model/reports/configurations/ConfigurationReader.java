@@ -1,26 +1,27 @@
 package challenge_it.racbit.model.reports.configurations;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 import challenge_it.racbit.model.core.exceptions.ReportGenerationException;
@@ -29,11 +30,33 @@ import challenge_it.racbit.model.reports.generators.utils.CrossReference;
 /**
  * Class that reads the XML file into an instance of Configuration
  * 
- *  @author Ctia Moreira e Joo Taborda
+ * The file is read in a single pass with a {@link ConfigurationStreamReader}, which validates
+ * it against the schema while the configuration is built. The compiled schemas are kept by
+ * resource path and shared by all the readers, so only the first read of each configuration
+ * pays for their creation.
+ * 
+ *  @author Cátia Moreira e João Taborda
  *
  */
 public abstract class ConfigurationReader{
 
+	/**
+	 * Contains the compiled schemas, by resource path
+	 */
+	private static final ConcurrentMap<String, Schema> SCHEMAS = new ConcurrentHashMap<String, Schema>();
+	
+	/**
+	 * Holds the factory of the StAX readers, so it is only created (and the XML stack only
+	 * loaded) when a configuration is read from its XML file
+	 */
+	private static class InputFactoryHolder {
+		
+		/**
+		 * Creates the StAX readers
+		 */
+		private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+	}
+
 	/**
 	 * Gets a Configuration instance with the XML information
 	 * 
@@ -45,17 +68,69 @@ public abstract class ConfigurationReader{
 	 */
 	
 	public Configuration read(String configurationFilename, String schemaFilename, String transformationFilename) throws ReportGenerationException {
+		return read(null, configurationFilename, schemaFilename, transformationFilename);
+	}
+	
+	/**
+	 * Gets a Configuration instance with the XML information, preferring the files of the given directory
+	 * 
+	 * Each file is looked up in the directory by its resource path and, when it isn't there, read
+	 * from the class path. The schemas of the directory are compiled on each read, since they can
+	 * be changed at any time.
+	 * 
+	 * A snapshot of the configuration (see {@link ConfigurationSnapshot}) is used instead of the
+	 * XML file when it was compiled from the current configuration and schema files.
+	 * 
+	 * The transformation is no longer applied: the configurations only used it to remove the
+	 * whitespace between the elements, which the stream reader skips. The parameter is kept so the
+	 * callers (and the files watched by the {@link ConfigurationRegistry}) stay the same.
+	 * 
+	 * @param directory The directory with the external configuration files, or null to only use the class path
+	 * @param configurationFilename XML filename
+	 * @param schemaFilename Schema filename
+	 * @param transformationFilename Transformation filename
+	 * @return A Configuration instance
+	 * @throws ReportGenerationException 
+	 */
+	public Configuration read(File directory, String configurationFilename, String schemaFilename, String transformationFilename) throws ReportGenerationException {
+		Configuration configuration = readSnapshot(directory, configurationFilename, schemaFilename);
+		
+		if(configuration != null)
+			return configuration;
+		
+		return readXml(directory, configurationFilename, schemaFilename);
+	}
+	
+	/**
+	 * Gets a Configuration instance from the XML file, preferring the files of the given directory
+	 * 
+	 * @param directory The directory with the external configuration files, or null to only use the class path
+	 * @param configurationFilename XML filename
+	 * @param schemaFilename Schema filename
+	 * @return A Configuration instance
+	 * @throws ReportGenerationException 
+	 */
+	Configuration readXml(File directory, String configurationFilename, String schemaFilename) throws ReportGenerationException {
 		
 		try {
-			DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-			dbFactory.setIgnoringElementContentWhitespace(true);
-			
-			DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-			Document doc = dBuilder.parse(ConfigurationReader.class.getClassLoader().getResourceAsStream(configurationFilename));
+			Schema schema = getSchema(directory, schemaFilename);
+			InputStream in = getResource(directory, configurationFilename);
 			
-			validateFile(doc, schemaFilename);
-
-			return getConfiguration(dBuilder.parse(transformFile(doc, transformationFilename)));
+			try {
+				XMLStreamReader reader = InputFactoryHolder.INPUT_FACTORY.createXMLStreamReader(in);
+				
+				try {
+					ConfigurationStreamReader stream = new ConfigurationStreamReader(reader, schema.newValidatorHandler());
+					Configuration configuration = getConfiguration(stream);
+					stream.finish();
+					
+					return configuration;
+				} finally {
+					reader.close();
+				}
+			} finally {
+				in.close();
+			}
 		}
 		catch (Exception e) {
 			throw new ReportGenerationException(e);
@@ -64,60 +139,220 @@ public abstract class ConfigurationReader{
 	}
 
 	/**
-	 * Gets a ByteArrayInputStream with the transform XML file
+	 * Gets the configuration from its snapshot, if there is one compiled from the current files
+	 * 
+	 * The snapshot is memory-mapped when it is a file, and read into memory otherwise (e.g. when
+	 * it is in a jar). A damaged snapshot is ignored, as well as one of another version.
 	 * 
-	 * @param doc
-	 * @param transformationFilename
-	 * @return ByteArrayInputStream
-	 * @throws TransformerException
+	 * @param directory The directory with the external configuration files, or null
+	 * @param configurationFilename XML filename
+	 * @param schemaFilename Schema filename
+	 * @return A Configuration instance, or null when the XML file has to be read
 	 */
-	private ByteArrayInputStream transformFile(Document doc, String transformationFilename) throws TransformerException {
-		TransformerFactory tFactory = TransformerFactory.newInstance();
-		Transformer transformer = tFactory.newTransformer(new StreamSource(ConfigurationReader.class.getClassLoader().getResourceAsStream(transformationFilename)));
-
-		DOMSource source = new DOMSource(doc);
-		ByteArrayOutputStream data = new ByteArrayOutputStream();
-		StreamResult result = new StreamResult(data);  
-
-		transformer.transform(source, result);
+	private Configuration readSnapshot(File directory, String configurationFilename, String schemaFilename) {
+		String snapshotFilename = ConfigurationSnapshot.getSnapshotFilename(configurationFilename);
 		
-		return new ByteArrayInputStream(data.toByteArray()); 
+		try {
+			ByteBuffer snapshot = null;
+			
+			if(isExternal(directory, snapshotFilename)){
+				snapshot = map(new File(directory, snapshotFilename));
+			}
+			else if(!isExternal(directory, configurationFilename)){
+				URL url = ConfigurationReader.class.getClassLoader().getResource(snapshotFilename);
+				
+				if(url == null)
+					return null;
+				
+				if(url.getProtocol().equals("file"))
+					snapshot = map(new File(url.toURI()));
+				else
+					snapshot = load(url);
+			}
+			
+			if(snapshot == null)
+				return null;
+			
+			return ConfigurationSnapshot.read(snapshot, getSourceChecksum(directory, configurationFilename, schemaFilename));
+		}
+		catch (Exception e) {
+			// The XML file is read instead
+			return null;
+		}
+	}
+	
+	/**
+	 * Computes the checksum of the files a configuration is read from
+	 * 
+	 * @param directory The directory with the external configuration files, or null
+	 * @param configurationFilename XML filename
+	 * @param schemaFilename Schema filename
+	 * @return The checksum of the configuration and schema files
+	 * @throws IOException When the files can't be read
+	 */
+	long getSourceChecksum(File directory, String configurationFilename, String schemaFilename) throws IOException {
+		InputStream configuration = getResource(directory, configurationFilename);
+		
+		try {
+			InputStream schema = getResource(directory, schemaFilename);
+			
+			try {
+				return ConfigurationSnapshot.checksum(configuration, schema);
+			} finally {
+				schema.close();
+			}
+		} finally {
+			configuration.close();
+		}
+	}
+	
+	/**
+	 * Maps a file into memory
+	 * 
+	 * @param file The file
+	 * @return The file contents
+	 * @throws IOException When the file can't be mapped
+	 */
+	private static ByteBuffer map(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		
+		try {
+			FileChannel channel = in.getChannel();
+			
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Reads a resource into memory
+	 * 
+	 * @param url The resource location
+	 * @return The resource contents
+	 * @throws IOException When the resource can't be read
+	 */
+	private static ByteBuffer load(URL url) throws IOException {
+		InputStream in = url.openStream();
+		
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			
+			while((read = in.read(buffer)) != -1)
+				bytes.write(buffer, 0, read);
+			
+			return ByteBuffer.wrap(bytes.toByteArray());
+		} finally {
+			in.close();
+		}
 	}
 
 	/**
-	 * Verify the XML file against the XSD Schema.
-	 * @param doc
-	 * @param schemaFilename
+	 * Creates the factory of the StAX readers
+	 * 
+	 * @return the XMLInputFactory
+	 */
+	private static XMLInputFactory createInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		
+		return factory;
+	}
+	    		
+	/**
+	 * Gets the compiled schema of the given resource, compiling it the first time it is needed
+	 * 
+	 * @param directory The directory with the external configuration files, or null
+	 * @param schemaFilename Schema filename
+	 * @return The compiled schema
 	 * @throws SAXException
 	 * @throws IOException
 	 */
-	private void validateFile(Document doc, String schemaFilename) throws SAXException, IOException {
-		SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-		Source schemaFile = new StreamSource(ConfigurationReader.class.getClassLoader().getResourceAsStream(schemaFilename));
-	    		
-		Schema schema = factory.newSchema(schemaFile);
-		Validator validator = schema.newValidator();
-		validator.validate(new DOMSource(doc));
+	private Schema getSchema(File directory, String schemaFilename) throws SAXException, IOException {
+		boolean external = isExternal(directory, schemaFilename);
+		Schema schema = external ? null : SCHEMAS.get(schemaFilename);
+		
+		if(schema == null){
+			SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+			InputStream in = getResource(directory, schemaFilename);
+			
+			try {
+				schema = factory.newSchema(new StreamSource(in));
+			} finally {
+				in.close();
+			}
+			
+			if(external)
+				return schema;
+			
+			Schema previous = SCHEMAS.putIfAbsent(schemaFilename, schema);
+			
+			if(previous != null)
+				schema = previous;
+		}
+		
+		return schema;
+	}
+	
+	/**
+	 * Checks if a resource is overridden by a file of the given directory
+	 * 
+	 * @param directory The directory with the external configuration files, or null
+	 * @param filename The resource path
+	 * @return true if the directory has the file
+	 */
+	private boolean isExternal(File directory, String filename) {
+		return directory != null && new File(directory, filename).isFile();
+	}
+	
+	/**
+	 * Gets a resource of the given directory or, when it isn't there, of the class path
+	 * 
+	 * @param directory The directory with the external configuration files, or null
+	 * @param filename The resource path
+	 * @return The resource stream
+	 * @throws IOException When the resource doesn't exist
+	 */
+	private InputStream getResource(File directory, String filename) throws IOException {
+		if(isExternal(directory, filename))
+			return new FileInputStream(new File(directory, filename));
+		
+		InputStream in = ConfigurationReader.class.getClassLoader().getResourceAsStream(filename);
 		
+		if(in == null)
+			throw new IOException("Resource not found: " + filename);
+		
+		return in;
 	}
 
 	/**
 	 * Retrieves the information from the XML file
 	 * 
-	 * @param doc
+	 * @param in The reader of the XML file, positioned at the beginning of the document
 	 * @return A Configuration instance
+	 * @throws XMLStreamException When the file can't be read or is not valid
 	 */
-	protected abstract Configuration getConfiguration(Document doc);
+	protected abstract Configuration getConfiguration(ConfigurationStreamReader in) throws XMLStreamException;
 
 	/**
-	 * Gets the row and column from an Element
+	 * Gets the row and column from the current element, reading it to its end
 	 * 
-	 * @param node XML element
-	 * @return The row and the column of the node
+	 * @param in The reader positioned at the element
+	 * @return The row and the column of the element
+	 * @throws XMLStreamException When the file can't be read or is not valid
 	 */
-	protected CrossReference getCell(Node node) {
-		String column = node.getFirstChild().getTextContent();
-		int row = Integer.parseInt(node.getLastChild().getTextContent());
+	protected CrossReference getCell(ConfigurationStreamReader in) throws XMLStreamException {
+		final int depth = in.getDepth();
+		List<String> values = new ArrayList<String>(2);
+		
+		while(in.nextElement(depth))
+			values.add(in.getElementText());
+		
+		String column = values.get(0);
+		int row = Integer.parseInt(values.get(values.size()-1));
 		
 		return new CrossReference(row-1, getColumn(column));
 	}	
@@ -0,0 +1,379 @@
+package challenge_it.racbit.model.reports.configurations;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import challenge_it.racbit.model.core.exceptions.ReportGenerationException;
+import challenge_it.racbit.model.reports.generators.utils.ReportSkeleton;
+
+/**
+ * Keeps the report configurations in memory, so each one is only read once.
+ *
+ * The configurations are read from the class path, unless an external configuration directory
+ * is being watched (see {@link #watch(File)}). In that case the files of the directory take the
+ * place of the resources with the same path and, when they change, the configurations that use
+ * them are read and validated again and replace the previous ones. A configuration that fails to
+ * be read keeps the previous one in use.
+ *
+ * The configurations are never changed once read, so they are shared by all the reports.
+ */
+public class ConfigurationRegistry implements Closeable {
+
+	/**
+	 * Notified when the configurations are read again
+	 */
+	public interface Listener {
+
+		/**
+		 * Called after a configuration is replaced
+		 *
+		 * @param configurationFilename The path of the configuration
+		 * @param configuration The new configuration
+		 */
+		void reloaded(String configurationFilename, Configuration configuration);
+
+		/**
+		 * Called when a configuration couldn't be read again, so the previous one is kept
+		 *
+		 * @param configurationFilename The path of the configuration
+		 * @param e The reason of the failure
+		 */
+		void reloadFailed(String configurationFilename, ReportGenerationException e);
+	}
+
+	/**
+	 * A configuration and the files it is read from
+	 */
+	private static class Entry {
+
+		/**
+		 * The paths of the configuration, schema and transformation files
+		 */
+		private final String _configurationFilename, _schemaFilename, _transformationFilename;
+
+		/**
+		 * The reader of this kind of configuration
+		 */
+		private final ConfigurationReader _reader;
+
+		/**
+		 * The configuration in use, replaced as a whole when the files change
+		 */
+		private volatile Configuration _configuration;
+
+		private Entry(String configurationFilename, String schemaFilename, String transformationFilename, ConfigurationReader reader, Configuration configuration) {
+			_configurationFilename = configurationFilename;
+			_schemaFilename = schemaFilename;
+			_transformationFilename = transformationFilename;
+			_reader = reader;
+			_configuration = configuration;
+		}
+
+		/**
+		 * Gets the paths of the files the configuration is read from, including its snapshot,
+		 * which is read before the XML file
+		 */
+		private String[] getFilenames() {
+			return new String[] { _configurationFilename, _schemaFilename, _transformationFilename,
+					ConfigurationSnapshot.getSnapshotFilename(_configurationFilename) };
+		}
+	}
+
+	/**
+	 * The registry used by the report generators
+	 */
+	private static final ConfigurationRegistry DEFAULT = new ConfigurationRegistry();
+
+	/**
+	 * Logs the failures of the listener
+	 */
+	private static final Logger LOGGER = Logger.getLogger(ConfigurationRegistry.class.getName());
+
+	/**
+	 * Time to wait for the related changes of a file (e.g. an editor writing a temporary file and renaming it)
+	 */
+	private static final long SETTLE_TIME_MILLIS = 200;
+
+	/**
+	 * Contains the configurations, by configuration path
+	 */
+	private final ConcurrentMap<String, Entry> _entries = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 * The directories already registered in the watch service
+	 */
+	private final Set<Path> _watchedDirectories = new HashSet<Path>();
+
+	/**
+	 * The external configuration directory, or null when only the class path is used
+	 */
+	private volatile File _directory;
+
+	/**
+	 * The service that watches the external configuration directory
+	 */
+	private WatchService _watchService;
+
+	/**
+	 * The object notified when the configurations are read again
+	 */
+	private volatile Listener _listener;
+
+	/**
+	 * Gets the registry used by the report generators
+	 *
+	 * @return the default registry
+	 */
+	public static ConfigurationRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Sets the object notified when the configurations are read again
+	 *
+	 * @param listener The listener, or null
+	 */
+	public void setListener(Listener listener) {
+		_listener = listener;
+	}
+
+	/**
+	 * Gets a configuration, reading it the first time it is needed
+	 *
+	 * @param configurationFilename XML filename
+	 * @param schemaFilename Schema filename
+	 * @param transformationFilename Transformation filename
+	 * @param reader The reader of this kind of configuration
+	 * @return A Configuration instance
+	 * @throws ReportGenerationException When the configuration can't be read
+	 */
+	public Configuration get(String configurationFilename, String schemaFilename, String transformationFilename, ConfigurationReader reader) throws ReportGenerationException {
+		Entry entry = _entries.get(configurationFilename);
+
+		if(entry == null){
+			Configuration configuration = reader.read(_directory, configurationFilename, schemaFilename, transformationFilename);
+			entry = new Entry(configurationFilename, schemaFilename, transformationFilename, reader, configuration);
+
+			Entry previous = _entries.putIfAbsent(configurationFilename, entry);
+
+			if(previous != null)
+				return previous._configuration;
+
+			register(entry);
+		}
+
+		return entry._configuration;
+	}
+
+	/**
+	 * Starts using and watching an external configuration directory
+	 *
+	 * The directory mirrors the class path resources (e.g. a file of the directory at
+	 * "configuration/ReportTransformation.xsl" replaces that resource). The configurations already
+	 * in memory are read again from it. Only the directories that exist when a configuration is
+	 * first needed are watched.
+	 *
+	 * @param directory The external configuration directory
+	 * @throws IOException When the directory can't be watched
+	 * @throws IllegalStateException When a directory is already being watched
+	 */
+	public synchronized void watch(File directory) throws IOException {
+		if(_watchService != null)
+			throw new IllegalStateException("A configuration directory is already being watched");
+
+		_watchService = FileSystems.getDefault().newWatchService();
+		_directory = directory;
+
+		for(Entry entry : _entries.values()){
+			register(entry);
+			reload(entry);
+		}
+
+		Thread watcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watchLoop();
+			}
+		}, "ConfigurationRegistry watcher");
+
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	/**
+	 * Stops watching the external configuration directory.
+	 * The configurations in use are kept.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if(_watchService != null){
+			_watchService.close();
+			_watchService = null;
+			_watchedDirectories.clear();
+		}
+	}
+
+	/**
+	 * Registers in the watch service the directories of the files of a configuration
+	 *
+	 * @param entry The configuration
+	 */
+	private synchronized void register(Entry entry) {
+		if(_watchService == null)
+			return;
+
+		for(String filename : entry.getFilenames()){
+			File parent = new File(_directory, filename).getParentFile();
+
+			if(!parent.isDirectory())
+				continue;
+
+			Path path = parent.toPath().toAbsolutePath();
+
+			if(_watchedDirectories.contains(path))
+				continue;
+
+			try {
+				path.register(_watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+				_watchedDirectories.add(path);
+			} catch (IOException e) {
+				notifyFailure(entry, new ReportGenerationException(e));
+			}
+		}
+	}
+
+	/**
+	 * Waits for changes in the watched directories and reads the affected configurations again,
+	 * until the watch service is closed
+	 */
+	private void watchLoop() {
+		WatchService watchService;
+
+		synchronized (this) {
+			watchService = _watchService;
+		}
+
+		try {
+			while(true){
+				Set<Path> changed = new HashSet<Path>();
+				WatchKey key = watchService.take();
+
+				// Gathers the changes made together before reading the files
+				Thread.sleep(SETTLE_TIME_MILLIS);
+
+				while(key != null){
+					Path directory = (Path) key.watchable();
+
+					for(WatchEvent<?> event : key.pollEvents()){
+						if(event.kind() == StandardWatchEventKinds.OVERFLOW)
+							changed.add(null);
+						else
+							changed.add(directory.resolve((Path) event.context()));
+					}
+
+					key.reset();
+					key = watchService.poll();
+				}
+
+				for(Entry entry : _entries.values()){
+					// A failure of one configuration must not stop the watcher for the others
+					try {
+						if(isAffected(entry, changed))
+							reload(entry);
+					} catch (RuntimeException e) {
+						notifyFailure(entry, new ReportGenerationException(e));
+					}
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// The registry was closed
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Checks if any of the files of a configuration was changed
+	 *
+	 * @param entry The configuration
+	 * @param changed The changed files, with null when the changes are unknown
+	 * @return true if the configuration has to be read again
+	 */
+	private boolean isAffected(Entry entry, Set<Path> changed) {
+		if(changed.contains(null))
+			return true;
+
+		for(String filename : entry.getFilenames()){
+			if(changed.contains(new File(_directory, filename).toPath().toAbsolutePath()))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Reads a configuration again and replaces the one in use, if it is valid
+	 *
+	 * @param entry The configuration
+	 */
+	private void reload(Entry entry) {
+		Configuration configuration;
+
+		try {
+			configuration = entry._reader.read(_directory, entry._configurationFilename, entry._schemaFilename, entry._transformationFilename);
+		} catch (ReportGenerationException e) {
+			notifyFailure(entry, e);
+			return;
+		} catch (RuntimeException e) {
+			notifyFailure(entry, new ReportGenerationException(e));
+			return;
+		}
+
+		entry._configuration = configuration;
+		ReportSkeleton.invalidate(entry._configurationFilename);
+
+		Listener listener = _listener;
+
+		if(listener != null){
+			try {
+				listener.reloaded(entry._configurationFilename, configuration);
+			} catch (RuntimeException e) {
+				// The configuration was replaced; a failing listener must not stop the watcher
+				LOGGER.log(Level.WARNING, "The listener failed on the reload of " + entry._configurationFilename, e);
+			}
+		}
+	}
+
+	/**
+	 * Notifies the listener that a configuration couldn't be read again
+	 *
+	 * @param entry The configuration
+	 * @param e The reason of the failure
+	 */
+	private void notifyFailure(Entry entry, ReportGenerationException e) {
+		Listener listener = _listener;
+
+		if(listener != null){
+			try {
+				listener.reloadFailed(entry._configurationFilename, e);
+			} catch (RuntimeException failure) {
+				// A failing listener must not stop the watcher
+				LOGGER.log(Level.WARNING, "The listener failed on the failed reload of " + entry._configurationFilename, failure);
+			}
+		}
+	}
+}
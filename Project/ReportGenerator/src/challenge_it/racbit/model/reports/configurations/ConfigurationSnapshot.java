@@ -0,0 +1,374 @@
+package challenge_it.racbit.model.reports.configurations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import challenge_it.racbit.model.core.base.NameDictionary;
+import challenge_it.racbit.model.core.exceptions.ReportGenerationException;
+import challenge_it.racbit.model.reports.generators.utils.CrossReference;
+import challenge_it.racbit.model.reports.generators.utils.RateShopReportBroker;
+
+/**
+ * Compact binary form of a validated report configuration.
+ *
+ * A snapshot is decoded without any XML parsing, so the configuration of a short-lived process
+ * is available without loading the XML stack or compiling the schema. It is saved next to the
+ * configuration file (see {@link #getSnapshotFilename(String)}) and used by
+ * {@link ConfigurationReader} in place of the XML file while the checksum of the XML and schema
+ * files it was compiled from still matches; otherwise the XML file is read as usual.
+ *
+ * The layout is: magic number, format version, checksum of the source files, length and CRC32
+ * of the payload, and the payload with the configuration fields.
+ *
+ * Snapshots are compiled with the {@link #main(String[])} tool.
+ */
+public final class ConfigurationSnapshot {
+
+	/**
+	 * The version of the snapshot format. Snapshots of other versions are ignored.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Identifies the snapshot files ("RCFG")
+	 */
+	private static final int MAGIC = 0x52434647;
+
+	/**
+	 * The size of the header: magic, version, source checksum, payload length and payload CRC
+	 */
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 8;
+
+	/**
+	 * The kinds of configuration
+	 */
+	private static final byte BENCHMARKING = 1, RATE_SHOP = 2;
+
+	/**
+	 * The encoding of the strings
+	 */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Creates an instance
+	 */
+	private ConfigurationSnapshot() {
+	}
+
+	/**
+	 * Compiles a configuration into a snapshot.
+	 *
+	 * Usage: ConfigurationSnapshot &lt;reader class&gt; &lt;configuration&gt; &lt;schema&gt; [&lt;directory&gt;]
+	 *
+	 * The configuration is read and validated from the given directory, or from the class path
+	 * when it isn't there, and the snapshot is written in the directory at the configuration path
+	 * followed by ".snapshot". The directory is the working directory when omitted.
+	 *
+	 * @param args The arguments
+	 * @throws Exception When the configuration can't be read or the snapshot can't be written
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length < 3 || args.length > 4){
+			System.err.println("Usage: ConfigurationSnapshot <reader class> <configuration> <schema> [<directory>]");
+			System.exit(1);
+		}
+
+		ConfigurationReader reader = (ConfigurationReader) Class.forName(args[0]).getDeclaredConstructor().newInstance();
+		File directory = new File(args.length == 4 ? args[3] : ".");
+
+		Configuration configuration = reader.readXml(directory, args[1], args[2]);
+		long checksum = reader.getSourceChecksum(directory, args[1], args[2]);
+
+		File file = new File(directory, getSnapshotFilename(args[1]));
+		file.getParentFile().mkdirs();
+
+		OutputStream out = new FileOutputStream(file);
+
+		try {
+			write(configuration, checksum, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Gets the path of the snapshot of a configuration
+	 *
+	 * @param configurationFilename XML filename
+	 * @return the snapshot path
+	 */
+	public static String getSnapshotFilename(String configurationFilename) {
+		return configurationFilename + ".snapshot";
+	}
+
+	/**
+	 * Computes the checksum of the source files of a snapshot
+	 *
+	 * @param sources The contents of the configuration and schema files
+	 * @return the checksum
+	 * @throws IOException When the files can't be read
+	 */
+	static long checksum(InputStream... sources) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[8192];
+
+		for(InputStream source : sources){
+			int read;
+
+			while((read = source.read(buffer)) != -1)
+				crc.update(buffer, 0, read);
+		}
+
+		return crc.getValue();
+	}
+
+	/**
+	 * Writes the snapshot of a configuration
+	 *
+	 * @param configuration The configuration
+	 * @param sourceChecksum The checksum of the files the configuration was read from
+	 * @param out The destination of the snapshot
+	 * @throws IOException When the snapshot can't be written
+	 */
+	public static void write(Configuration configuration, long sourceChecksum, OutputStream out) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream payload = new DataOutputStream(bytes);
+
+		if(configuration instanceof BenchmarkingReportConfiguration){
+			BenchmarkingReportConfiguration c = (BenchmarkingReportConfiguration) configuration;
+
+			payload.writeByte(BENCHMARKING);
+			writeCell(payload, c.getRateCell());
+			writeCell(payload, c.getTitleCell());
+			writeCell(payload, c.getConsultationDateCell());
+			writeCell(payload, c.getHourCell());
+			writeCell(payload, c.getPickUpDateCell());
+			writeCell(payload, c.getGridValuesFirstCell());
+			writeCell(payload, c.getLocationCell());
+			writeCell(payload, c.getGroupCell());
+			writeCell(payload, c.getNumberOfDaysCell());
+		}
+		else if(configuration instanceof RateShopReportConfiguration){
+			RateShopReportConfiguration c = (RateShopReportConfiguration) configuration;
+
+			payload.writeByte(RATE_SHOP);
+			writeCell(payload, c.getRateCell());
+			writeCell(payload, c.getDestinationCell());
+			writeCell(payload, c.getMonthCell());
+			writeCell(payload, c.getDayCell());
+			writeCell(payload, c.getGroupsBeginningCell());
+			writeCell(payload, c.getGridValuesFirstCell());
+			payload.writeInt(c.getConversionTableOffset());
+
+			payload.writeInt(c.getGroupsList().size());
+
+			for(String group : c.getGroupsList()){
+				writeString(payload, group);
+				writeCell(payload, c.getGroupsMap().get(group));
+			}
+
+			payload.writeInt(c.getBrokersList().size());
+
+			for(String name : c.getBrokersList()){
+				RateShopReportBroker broker = c.getBrokers().get(name);
+				List<String> suppliers = broker.getSuppliersList();
+
+				writeString(payload, name);
+				writeString(payload, broker.getName());
+				payload.writeBoolean(broker.hasMinimum());
+				writeString(payload, broker.getMinimumColumnName());
+				payload.writeInt(suppliers.isEmpty() ? 0 : broker.getSuppliersMap().get(NameDictionary.getId(suppliers.get(0))).getRow());
+				payload.writeInt(suppliers.size());
+
+				for(String supplier : suppliers)
+					writeString(payload, supplier);
+			}
+		}
+		else
+			throw new IllegalArgumentException("Unsupported configuration: " + configuration.getClass().getName());
+
+		payload.flush();
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeLong(sourceChecksum);
+		data.writeInt(bytes.size());
+		data.writeLong(crc.getValue());
+		bytes.writeTo(data);
+		data.flush();
+	}
+
+	/**
+	 * Decodes a snapshot
+	 *
+	 * @param buffer The snapshot contents
+	 * @param sourceChecksum The checksum of the current source files
+	 * @return the configuration, or null when the snapshot is of another version or was compiled
+	 * from other source files
+	 * @throws ReportGenerationException When the snapshot is damaged
+	 */
+	public static Configuration read(ByteBuffer buffer, long sourceChecksum) throws ReportGenerationException {
+		try {
+			if(buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+				throw new ReportGenerationException("Not a configuration snapshot");
+
+			if(buffer.getInt() != VERSION || buffer.getLong() != sourceChecksum)
+				return null;
+
+			int length = buffer.getInt();
+			long payloadCrc = buffer.getLong();
+
+			if(length != buffer.remaining())
+				throw new ReportGenerationException("Truncated configuration snapshot");
+
+			byte[] payload = new byte[length];
+			buffer.get(payload);
+
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+
+			if(crc.getValue() != payloadCrc)
+				throw new ReportGenerationException("Damaged configuration snapshot");
+
+			return decode(ByteBuffer.wrap(payload));
+		} catch (BufferUnderflowException e) {
+			throw new ReportGenerationException("Damaged configuration snapshot", e);
+		}
+	}
+
+	/**
+	 * Decodes the payload of a snapshot
+	 *
+	 * @param in The payload
+	 * @return the configuration
+	 * @throws ReportGenerationException When the kind of configuration is unknown
+	 */
+	private static Configuration decode(ByteBuffer in) throws ReportGenerationException {
+		byte kind = in.get();
+
+		if(kind == BENCHMARKING){
+			BenchmarkingReportConfiguration c = new BenchmarkingReportConfiguration();
+
+			c.setRateCell(readCell(in));
+			c.setTitleCell(readCell(in));
+			c.setConsultationDateCell(readCell(in));
+			c.setHourCell(readCell(in));
+			c.setPickUpDateCell(readCell(in));
+			c.setGridValuesFirstCell(readCell(in));
+			c.setLocationCell(readCell(in));
+			c.setGroupCell(readCell(in));
+			c.setNumberOfDaysCell(readCell(in));
+
+			return c;
+		}
+
+		if(kind == RATE_SHOP){
+			RateShopReportConfiguration c = new RateShopReportConfiguration();
+
+			c.setRateCell(readCell(in));
+			c.setDestinationCell(readCell(in));
+			c.setMonthCell(readCell(in));
+			c.setDayCell(readCell(in));
+			c.setGroupsBeginningCell(readCell(in));
+			c.setGridValuesFirstCell(readCell(in));
+			c.setConversionTableOffset(in.getInt());
+
+			int groups = in.getInt();
+
+			for(int i = 0; i < groups; i++){
+				String group = readString(in);
+				c.addGroup(group, readCell(in));
+			}
+
+			int brokers = in.getInt();
+
+			for(int i = 0; i < brokers; i++){
+				String name = readString(in);
+				String brokerName = readString(in);
+				boolean hasMinimum = in.get() != 0;
+				String minimumColumnName = readString(in);
+				int headerRow = in.getInt();
+				int count = in.getInt();
+
+				List<String> suppliers = new ArrayList<String>(count);
+
+				for(int j = 0; j < count; j++)
+					suppliers.add(readString(in));
+
+				c.addBroker(name, new RateShopReportBroker(brokerName, hasMinimum, minimumColumnName, suppliers, headerRow));
+			}
+
+			return c;
+		}
+
+		throw new ReportGenerationException("Unknown configuration kind in snapshot: " + kind);
+	}
+
+	/**
+	 * Writes a cell reference, which can be null
+	 */
+	private static void writeCell(DataOutputStream out, CrossReference cell) throws IOException {
+		out.writeBoolean(cell != null);
+
+		if(cell != null){
+			out.writeInt(cell.getRow());
+			out.writeInt(cell.getColumn());
+		}
+	}
+
+	/**
+	 * Reads a cell reference, which can be null
+	 */
+	private static CrossReference readCell(ByteBuffer in) {
+		if(in.get() == 0)
+			return null;
+
+		int row = in.getInt();
+
+		return new CrossReference(row, in.getInt());
+	}
+
+	/**
+	 * Writes a string, which can be null, as its length and UTF-8 bytes
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if(value == null){
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string, which can be null
+	 */
+	private static String readString(ByteBuffer in) {
+		int length = in.getInt();
+
+		if(length < 0)
+			return null;
+
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+
+		return new String(bytes, UTF8);
+	}
+}
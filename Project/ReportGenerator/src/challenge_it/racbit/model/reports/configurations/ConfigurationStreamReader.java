@@ -0,0 +1,213 @@
+package challenge_it.racbit.model.reports.configurations;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.validation.ValidatorHandler;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Reads the elements of a configuration file in a single pass, validating them as they are read.
+ *
+ * Each event taken from the underlying StAX reader is also given to a schema validator, so an
+ * element that doesn't follow the schema fails the read as soon as it is reached, before being
+ * seen by the configuration reader. The whitespace between the elements is skipped.
+ */
+public final class ConfigurationStreamReader {
+
+	/**
+	 * The underlying reader
+	 */
+	private final XMLStreamReader _reader;
+
+	/**
+	 * The validator of the read events
+	 */
+	private final ValidatorHandler _validator;
+
+	/**
+	 * The number of elements open at the current position
+	 */
+	private int _depth;
+
+	/**
+	 * Creates an instance positioned at the beginning of the document
+	 *
+	 * @param reader The underlying reader
+	 * @param validator The validator of the read events
+	 * @throws XMLStreamException When the document is not valid
+	 */
+	ConfigurationStreamReader(XMLStreamReader reader, ValidatorHandler validator) throws XMLStreamException {
+		_reader = reader;
+		_validator = validator;
+
+		try {
+			_validator.startDocument();
+		} catch (SAXException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	/**
+	 * Advances to the next element of the document
+	 *
+	 * @return true if there is one, false at the end of the document
+	 * @throws XMLStreamException When the document can't be read or is not valid
+	 */
+	public boolean nextElement() throws XMLStreamException {
+		return nextElement(0);
+	}
+
+	/**
+	 * Advances to the next element inside the element of the given depth
+	 *
+	 * @param depth The depth of the enclosing element, see {@link #getDepth()}
+	 * @return true if there is one, false when the enclosing element ends
+	 * @throws XMLStreamException When the document can't be read or is not valid
+	 */
+	public boolean nextElement(int depth) throws XMLStreamException {
+		while(_reader.hasNext()){
+			int event = next();
+
+			if(event == XMLStreamConstants.START_ELEMENT && _depth > depth)
+				return true;
+
+			if(event == XMLStreamConstants.END_ELEMENT && _depth < depth)
+				return false;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Gets the depth of the current element, 1 being the root element
+	 *
+	 * @return the number of elements open at the current position
+	 */
+	public int getDepth() {
+		return _depth;
+	}
+
+	/**
+	 * Gets the name of the current element
+	 *
+	 * @return the local name of the element
+	 */
+	public String getName() {
+		return _reader.getLocalName();
+	}
+
+	/**
+	 * Gets an attribute of the current element
+	 *
+	 * @param name The attribute name
+	 * @return the attribute value, or null if the element doesn't have it
+	 */
+	public String getAttribute(String name) {
+		return _reader.getAttributeValue(null, name);
+	}
+
+	/**
+	 * Reads the text of the current element, advancing to its end
+	 *
+	 * @return the element text
+	 * @throws XMLStreamException When the element has other elements, or the document can't be read or is not valid
+	 */
+	public String getElementText() throws XMLStreamException {
+		StringBuilder text = new StringBuilder();
+
+		while(true){
+			switch(next()){
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				text.append(_reader.getTextCharacters(), _reader.getTextStart(), _reader.getTextLength());
+				break;
+			case XMLStreamConstants.START_ELEMENT:
+				throw new XMLStreamException("Unexpected element " + _reader.getLocalName(), _reader.getLocation());
+			case XMLStreamConstants.END_ELEMENT:
+				return text.toString();
+			case XMLStreamConstants.END_DOCUMENT:
+				throw new XMLStreamException("Unexpected end of document", _reader.getLocation());
+			}
+		}
+	}
+
+	/**
+	 * Reads the rest of the document, so all of it is validated
+	 *
+	 * @throws XMLStreamException When the document can't be read or is not valid
+	 */
+	void finish() throws XMLStreamException {
+		while(_reader.hasNext())
+			next();
+	}
+
+	/**
+	 * Advances the underlying reader and gives the event to the validator
+	 *
+	 * @return the event type
+	 * @throws XMLStreamException When the document can't be read or is not valid
+	 */
+	private int next() throws XMLStreamException {
+		int event = _reader.next();
+
+		try {
+			switch(event){
+			case XMLStreamConstants.START_ELEMENT:
+				_depth++;
+
+				for(int i = 0; i < _reader.getNamespaceCount(); i++)
+					_validator.startPrefixMapping(nullToEmpty(_reader.getNamespacePrefix(i)), nullToEmpty(_reader.getNamespaceURI(i)));
+
+				AttributesImpl attributes = new AttributesImpl();
+
+				for(int i = 0; i < _reader.getAttributeCount(); i++){
+					attributes.addAttribute(nullToEmpty(_reader.getAttributeNamespace(i)), _reader.getAttributeLocalName(i),
+							getQualifiedName(_reader.getAttributePrefix(i), _reader.getAttributeLocalName(i)), "CDATA", _reader.getAttributeValue(i));
+				}
+
+				_validator.startElement(nullToEmpty(_reader.getNamespaceURI()), _reader.getLocalName(),
+						getQualifiedName(_reader.getPrefix(), _reader.getLocalName()), attributes);
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				_depth--;
+
+				_validator.endElement(nullToEmpty(_reader.getNamespaceURI()), _reader.getLocalName(),
+						getQualifiedName(_reader.getPrefix(), _reader.getLocalName()));
+
+				for(int i = 0; i < _reader.getNamespaceCount(); i++)
+					_validator.endPrefixMapping(nullToEmpty(_reader.getNamespacePrefix(i)));
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				_validator.characters(_reader.getTextCharacters(), _reader.getTextStart(), _reader.getTextLength());
+				break;
+			case XMLStreamConstants.END_DOCUMENT:
+				_validator.endDocument();
+				break;
+			}
+		} catch (SAXException e) {
+			throw new XMLStreamException(e.getMessage(), _reader.getLocation(), e);
+		}
+
+		return event;
+	}
+
+	/**
+	 * Gets the qualified name of an element or attribute
+	 */
+	private static String getQualifiedName(String prefix, String localName) {
+		return prefix == null || prefix.length() == 0 ? localName : prefix + ":" + localName;
+	}
+
+	/**
+	 * Gets an empty string instead of null, as expected by the validator
+	 */
+	private static String nullToEmpty(String value) {
+		return value == null ? "" : value;
+	}
+}
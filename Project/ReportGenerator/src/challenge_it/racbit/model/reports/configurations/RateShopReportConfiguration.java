@@ -1,5 +1,6 @@
 package challenge_it.racbit.model.reports.configurations;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -12,7 +13,11 @@ import challenge_it.racbit.model.reports.generators.utils.RateShopReportBroker;
  * 
  * Represents the content of the XML file, with the configuration to generate a Rate Shop Report file.
  * 
- *  @author Ctia Moreira e Joo Taborda
+ * The collections are exposed as read-only views and the brokers are immutable, so once read
+ * an instance can be shared by concurrent reports. What each report finds in its results is
+ * kept apart, see {@link challenge_it.racbit.model.reports.generators.utils.RateShopReportBrokerInfo}.
+ * 
+ *  @author Cátia Moreira e João Taborda
  *
  */
 public class RateShopReportConfiguration extends Configuration{
@@ -57,6 +62,21 @@ public class RateShopReportConfiguration extends Configuration{
 	 */
 	private List<String> _brokersList;
 
+	/**
+	 * Read-only views of the lists of groups and brokers
+	 */
+	private final List<String> _groupsListView, _brokersListView;
+
+	/**
+	 * Read-only view of the groups and their row index
+	 */
+	private final Map<String, CrossReference> _groupsMapView;
+
+	/**
+	 * Read-only view of the brokers
+	 */
+	private final Map<String, RateShopReportBroker> _brokersView;
+
 	/**
 	 * The reference to the first cell that has values
 	 */
@@ -72,6 +92,11 @@ public class RateShopReportConfiguration extends Configuration{
 		_groupsMap = new HashMap<String, CrossReference>();
 		_brokers = new HashMap<String, RateShopReportBroker>();
 		_brokersList = new LinkedList<String>();
+		
+		_groupsListView = Collections.unmodifiableList(_groupsList);
+		_groupsMapView = Collections.unmodifiableMap(_groupsMap);
+		_brokersView = Collections.unmodifiableMap(_brokers);
+		_brokersListView = Collections.unmodifiableList(_brokersList);
 	}
 
 	
@@ -146,7 +171,7 @@ public class RateShopReportConfiguration extends Configuration{
 	 * @return the map of brokers
 	 */
 	public Map<String, RateShopReportBroker> getBrokers(){
-		return _brokers;
+		return _brokersView;
 	}
 	
 	/**
@@ -155,7 +180,7 @@ public class RateShopReportConfiguration extends Configuration{
 	 * @return A map of groups
 	 */
 	public Map<String, CrossReference> getGroupsMap(){
-		return _groupsMap;
+		return _groupsMapView;
 	}
 	
 	/**
@@ -175,7 +200,7 @@ public class RateShopReportConfiguration extends Configuration{
 	 * @return the list of brokers
 	 */
 	public List<String> getBrokersList(){
-		return _brokersList;
+		return _brokersListView;
 	}
 	
 	/**
@@ -184,7 +209,7 @@ public class RateShopReportConfiguration extends Configuration{
 	 * @return the list of groups
 	 */
 	public List<String> getGroupsList(){
-		return _groupsList;
+		return _groupsListView;
 	}
 	
 	/**
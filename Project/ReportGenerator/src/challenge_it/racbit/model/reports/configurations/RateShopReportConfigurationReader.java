@@ -1,9 +1,9 @@
 package challenge_it.racbit.model.reports.configurations;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
 
 import challenge_it.racbit.model.reports.generators.utils.CrossReference;
 import challenge_it.racbit.model.reports.generators.utils.RateShopReportBroker;
@@ -13,53 +13,40 @@ public class RateShopReportConfigurationReader extends ConfigurationReader{
 	/**
 	 * Reads the XML file and retrieves all the information
 	 * 
-	 * @param doc The representation of the XML file
+	 * The elements follow the order of the schema, so the first cell of the grid is known
+	 * before the brokers and the groups are read.
+	 * 
+	 * @param in The reader of the XML file
 	 * @return an instance of Configuration that has the information read from XML file
+	 * @throws XMLStreamException When the file can't be read or is not valid
 	 */
 	@Override
-	protected Configuration getConfiguration(Document doc) {
-		final int FIRST_IDX = 0;
-		
+	protected Configuration getConfiguration(ConfigurationStreamReader in) throws XMLStreamException {
 		RateShopReportConfiguration configuration = new RateShopReportConfiguration();
 		
-		configuration.setDestinationCell(getCell(doc.getElementsByTagName("Destination").item(FIRST_IDX)));
-		
-		configuration.setMonthCell(getCell(doc.getElementsByTagName("Month").item(FIRST_IDX)));
+		CrossReference gridBeginCell = null;
 		
-		configuration.setDayCell(getCell(doc.getElementsByTagName("Days").item(FIRST_IDX)));
+		while(in.nextElement()){
+			String name = in.getName();
 		
-		CrossReference gridBeginCell = getCell(doc.getElementsByTagName("Generate").item(FIRST_IDX).getFirstChild());
-		configuration.setGridValuesFirstCell(gridBeginCell);
-		
-		NodeList brokers = doc.getElementsByTagName("Broker");
-		
-		for(int i=0; i<brokers.getLength(); i++){
-			Node brokerNode = brokers.item(i);
-			NamedNodeMap attr = brokerNode.getAttributes();
-			boolean hasMinimum = Boolean.parseBoolean(attr.getNamedItem("hasMinimum").getTextContent());
-			String name = attr.getNamedItem("name").getTextContent();
-			String columnName = null;
-			
-			if(hasMinimum)
-				columnName =attr.getNamedItem("minimumName").getTextContent();
-				
-			RateShopReportBroker broker = new RateShopReportBroker(name, hasMinimum, columnName);
-			
-			NodeList suppliers = brokerNode.getFirstChild().getChildNodes();
-			
-			for(int j=0; j<suppliers.getLength(); j++){
-				Node supplierNode = suppliers.item(j); 
-				broker.addSupplier(supplierNode.getFirstChild().getTextContent(), new CrossReference(gridBeginCell.getRow()-1, j));
+			if(name.equals("Destination"))
+				configuration.setDestinationCell(getCell(in));
+			else if(name.equals("Month"))
+				configuration.setMonthCell(getCell(in));
+			else if(name.equals("Days"))
+				configuration.setDayCell(getCell(in));
+			else if(name.equals("ConversionRate"))
+				getCell(in);
+			else if(name.equals("Begin")){
+				gridBeginCell = getCell(in);
+				configuration.setGridValuesFirstCell(gridBeginCell);
+			}
+			else if(name.equals("Broker"))
+				readBroker(in, configuration, gridBeginCell);
+			else if(name.equals("Group")){
+				int j = configuration.getGroupsList().size();
+				configuration.addGroup(readName(in), new CrossReference(gridBeginCell.getRow()+j, gridBeginCell.getColumn()-1));
 			}
-			
-			configuration.addBroker(name, broker);
-		}
-
-		NodeList groups = doc.getElementsByTagName("Group");
-		
-		for(int j=0; j<groups.getLength(); j++){
-			Node groupNode = groups.item(j); 
-			configuration.addGroup(groupNode.getFirstChild().getTextContent(), new CrossReference(gridBeginCell.getRow()+j, gridBeginCell.getColumn()-1));
 		}
 		
 		configuration.setRateCell(new CrossReference(gridBeginCell.getRow() + configuration.getGroupsList().size() + 1, gridBeginCell.getColumn()-1));
@@ -68,4 +55,50 @@ public class RateShopReportConfigurationReader extends ConfigurationReader{
 		return configuration;
 	}
 
+	/**
+	 * Reads a broker and its suppliers
+	 * 
+	 * @param in The reader positioned at the broker element
+	 * @param configuration The configuration where the broker is added
+	 * @param gridBeginCell The first cell of the grid
+	 * @throws XMLStreamException When the file can't be read or is not valid
+	 */
+	private void readBroker(ConfigurationStreamReader in, RateShopReportConfiguration configuration, CrossReference gridBeginCell) throws XMLStreamException {
+		final int depth = in.getDepth();
+		
+		boolean hasMinimum = Boolean.parseBoolean(in.getAttribute("hasMinimum"));
+		String name = in.getAttribute("name");
+		String columnName = null;
+		
+		if(hasMinimum)
+			columnName = in.getAttribute("minimumName");
+		
+		List<String> suppliersList = new ArrayList<String>();
+		
+		while(in.nextElement(depth)){
+			if(in.getName().equals("Supplier"))
+				suppliersList.add(readName(in));
+		}
+		
+		configuration.addBroker(name, new RateShopReportBroker(name, hasMinimum, columnName, suppliersList, gridBeginCell.getRow()-1));
+	}
+	
+	/**
+	 * Reads the name of the current element (its first child), reading it to its end
+	 * 
+	 * @param in The reader positioned at the element
+	 * @return The name
+	 * @throws XMLStreamException When the file can't be read or is not valid
+	 */
+	private String readName(ConfigurationStreamReader in) throws XMLStreamException {
+		final int depth = in.getDepth();
+		String name = null;
+		
+		while(in.nextElement(depth)){
+			if(name == null)
+				name = in.getElementText();
+		}
+		
+		return name;
+	}
 }
@@ -8,7 +8,7 @@ import challenge_it.racbit.model.core.exceptions.CurrencyConversionException;
  * 
  * (http://www.google.com/ig/calculator?hl=en&q=1EUR=?GBP -> {lhs: "1 Euro",rhs: "0.801398951 British pounds",error: "",icc: true})
  * 
- *  @author Ctia Moreira e Joo Taborda
+ *  @author Cátia Moreira e João Taborda
  *
  */
 public class Conversion {
@@ -31,9 +31,19 @@ public class Conversion {
 	 * @throws ConversionException When couldn't get the converted rate
 	 */
 	public double exchangeRate(int numberOfDecimals) throws CurrencyConversionException {
+		return roundToDecimals(exchangeRate(), numberOfDecimals);
+	}
+
+	/**
+	 * Gets the conversion rate, without rounding
+	 *
+	 * @return The conversion rate
+	 * @throws ConversionException When couldn't get the converted rate
+	 */
+	public double exchangeRate() throws CurrencyConversionException {
 		if(!icc)
 			throw new CurrencyConversionException();
-		return roundToDecimals(Double.parseDouble(rhs.split(" ")[0]), numberOfDecimals);
+		return Double.parseDouble(rhs.split(" ")[0]);
 	}
 	
 	/**
@@ -41,7 +51,7 @@ public class Conversion {
 	 * @param c - The number of decimals
 	 * @return the value conversion
 	 */
-	private static double roundToDecimals(double d, int c) {
+	static double roundToDecimals(double d, int c) {
 		int temp=(int)((d*Math.pow(10,c)));
 		return (((double)temp)/Math.pow(10,c));
 	}
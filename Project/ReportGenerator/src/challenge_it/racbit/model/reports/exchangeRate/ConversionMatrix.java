@@ -0,0 +1,161 @@
+package challenge_it.racbit.model.reports.exchangeRate;
+
+import java.util.Calendar;
+
+import challenge_it.racbit.model.core.IExchangeRateProvider;
+import challenge_it.racbit.model.core.exceptions.CurrencyConversionException;
+
+/**
+ * Converts prices of a currency into a set of target currencies.
+ *
+ * The rates of all the target currencies are loaded once, when the matrix is created, so a batch of prices
+ * is converted into every target currency in a single pass, without looking up any rate. The rates are the
+ * ones of the reports, that is, the rate from each target currency to the currency of the prices, truncated
+ * to the given number of decimals, and a price is converted by dividing it by that rate.
+ */
+public final class ConversionMatrix {
+
+	/**
+	 * The currency of the prices
+	 */
+	private final String _currency;
+
+	/**
+	 * The target currencies
+	 */
+	private final String[] _targets;
+
+	/**
+	 * The rate from each target currency to the currency of the prices
+	 */
+	private final double[] _rates;
+
+	/**
+	 * Creates an instance
+	 */
+	private ConversionMatrix(String currency, String[] targets, double[] rates) {
+		_currency = currency;
+		_targets = targets;
+		_rates = rates;
+	}
+
+	/**
+	 * Loads the rates of the target currencies on a day
+	 *
+	 * @param provider The source of the rates
+	 * @param date The day of the rates
+	 * @param numOfDecimals The number of decimals of the rates
+	 * @param currency The currency of the prices ( e.g.: EUR, USD, GBP, ...)
+	 * @param targets The currencies the prices are converted into
+	 * @return the matrix
+	 * @throws CurrencyConversionException When a rate can't be obtained
+	 * @throws IllegalArgumentException When a rate is 0
+	 */
+	public static ConversionMatrix load(IExchangeRateProvider provider, Calendar date, int numOfDecimals, String currency, String... targets) throws CurrencyConversionException {
+		double[] rates = new double[targets.length];
+
+		for(int t = 0; t < targets.length; t++){
+			rates[t] = ExchangeRateService.getExchangeRate(provider, targets[t], currency, date, numOfDecimals);
+
+			if(rates[t] == 0)
+				throw new IllegalArgumentException("The rate from " + targets[t] + " to " + currency + " is 0");
+		}
+
+		return new ConversionMatrix(currency, targets.clone(), rates);
+	}
+
+	/**
+	 * Gets the currency of the prices
+	 *
+	 * @return the currency
+	 */
+	public String getCurrency() {
+		return _currency;
+	}
+
+	/**
+	 * Gets the number of target currencies
+	 *
+	 * @return the number of targets
+	 */
+	public int getTargetCount() {
+		return _targets.length;
+	}
+
+	/**
+	 * Gets a target currency
+	 *
+	 * @param target The index of the target
+	 * @return the currency
+	 */
+	public String getTarget(int target) {
+		return _targets[target];
+	}
+
+	/**
+	 * Gets the index of a target currency
+	 *
+	 * @param currency The currency
+	 * @return the index of the target, or -1 if the currency is not a target
+	 */
+	public int indexOf(String currency) {
+		for(int t = 0; t < _targets.length; t++)
+			if(_targets[t].equals(currency))
+				return t;
+
+		return -1;
+	}
+
+	/**
+	 * Gets the rate from a target currency to the currency of the prices
+	 *
+	 * @param target The index of the target
+	 * @return the rate
+	 */
+	public double getRate(int target) {
+		return _rates[target];
+	}
+
+	/**
+	 * Converts a price
+	 *
+	 * @param price The price
+	 * @param target The index of the target currency
+	 * @return the converted price
+	 */
+	public double convert(double price, int target) {
+		return price / _rates[target];
+	}
+
+	/**
+	 * Converts a batch of prices into every target currency
+	 *
+	 * @param prices The prices
+	 * @return the converted prices, by target index and price index
+	 */
+	public double[][] convert(double[] prices) {
+		double[][] converted = new double[_targets.length][prices.length];
+
+		convert(prices, 0, prices.length, converted);
+
+		return converted;
+	}
+
+	/**
+	 * Converts a range of a batch of prices into every target currency
+	 *
+	 * @param prices The prices
+	 * @param offset The index of the first price
+	 * @param length The number of prices
+	 * @param converted Receives the converted prices, by target index and price index
+	 */
+	public void convert(double[] prices, int offset, int length, double[][] converted) {
+		for(int t = 0; t < _rates.length; t++){
+			double rate = _rates[t];
+			double[] out = converted[t];
+
+			for(int i = offset; i < offset + length; i++)
+				out[i] = prices[i] / rate;
+		}
+	}
+}
@@ -0,0 +1,426 @@
+package challenge_it.racbit.model.reports.exchangeRate;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+
+import challenge_it.racbit.model.core.IExchangeRateProvider;
+import challenge_it.racbit.model.core.exceptions.CurrencyConversionException;
+
+/**
+ * Store of the daily rates of currency pairs, persisted in a file, so the reports of past dates can be
+ * generated again without fetching their rates.
+ *
+ * The rates of each pair are kept in an array indexed by the number of days since the first day of the pair,
+ * NaN for the days without a rate. A lookup of the current day without a rate fetches it from the source
+ * provider, when there is one, and keeps it, so the store grows with the reports generated each day. The
+ * lookups of other days without a rate use the rate of the previous day with a rate, and the days after
+ * the current one use the rate of the current day, as they have no rates yet.
+ *
+ * The rates of past days are stored with {@link #fill(FileExchangeRateProvider, String, String, Calendar, Calendar)},
+ * from a file of historical rates, so the reports of those days can be generated without any source. The
+ * source provider isn't used for that, as it may only know the current rates (e.g. an
+ * {@link HttpExchangeRateProvider}, which ignores the date).
+ *
+ * The rates are looked up and stored while holding the lock of the store, but they are fetched without
+ * it, so a slow source doesn't block the lookups of the stored rates.
+ *
+ * The file is memory-mapped when the store is opened and written again by {@link #save()} or {@link #close()}
+ * when rates were added. The layout is: magic number, format version, number of pairs and, for each pair,
+ * the currencies, the first day (days since 1970-01-01), the number of days and the rates.
+ */
+public class ExchangeRateHistory implements IExchangeRateProvider, Closeable {
+
+	/**
+	 * The version of the file format
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Identifies the files ("RXTS")
+	 */
+	private static final int MAGIC = 0x52585453;
+
+	/**
+	 * The rates of a currency pair
+	 */
+	private static class Series {
+
+		/**
+		 * The day of the first rate, as days since 1970-01-01
+		 */
+		private int _firstDay;
+
+		/**
+		 * The rates, by number of days since the first day (NaN when missing)
+		 */
+		private double[] _rates;
+
+		private Series(int firstDay, double[] rates) {
+			_firstDay = firstDay;
+			_rates = rates;
+		}
+
+		/**
+		 * Gets the rate of a day
+		 *
+		 * @return the rate, NaN when missing
+		 */
+		private double get(int day) {
+			int offset = day - _firstDay;
+
+			return offset >= 0 && offset < _rates.length ? _rates[offset] : Double.NaN;
+		}
+
+		/**
+		 * Gets the rate of a day, or of the previous day with a rate
+		 *
+		 * @return the rate, NaN when there is none
+		 */
+		private double getLatest(int day) {
+			for(int offset = Math.min(day - _firstDay, _rates.length - 1); offset >= 0; offset--)
+				if(!Double.isNaN(_rates[offset]))
+					return _rates[offset];
+
+			return Double.NaN;
+		}
+
+		/**
+		 * Sets the rate of a day, growing the array as needed
+		 */
+		private void set(int day, double rate) {
+			if(day < _firstDay){
+				double[] rates = new double[_rates.length + _firstDay - day];
+				Arrays.fill(rates, 0, _firstDay - day, Double.NaN);
+				System.arraycopy(_rates, 0, rates, _firstDay - day, _rates.length);
+
+				_rates = rates;
+				_firstDay = day;
+			}
+			else if(day - _firstDay >= _rates.length){
+				int length = _rates.length;
+				_rates = Arrays.copyOf(_rates, Math.max(day - _firstDay + 1, length + length / 2));
+				Arrays.fill(_rates, length, _rates.length, Double.NaN);
+			}
+
+			_rates[day - _firstDay] = rate;
+		}
+
+		/**
+		 * Gets the number of days up to the last rate
+		 */
+		private int getLength() {
+			int length = _rates.length;
+
+			while(length > 0 && Double.isNaN(_rates[length - 1]))
+				length--;
+
+			return length;
+		}
+	}
+
+	/**
+	 * The file of the store
+	 */
+	private final File _file;
+
+	/**
+	 * The provider of the missing rates, or null
+	 */
+	private final IExchangeRateProvider _source;
+
+	/**
+	 * Contains the rates, by currency pair
+	 */
+	private final Map<String, Series> _series = new HashMap<String, Series>();
+
+	/**
+	 * States that rates were added since the file was read or written
+	 */
+	private boolean _modified;
+
+	/**
+	 * Opens a store, reading the rates of its file if it exists
+	 *
+	 * @param file The file of the store
+	 * @param source The provider of the missing rates, or null to use only the stored rates
+	 * @throws IOException When the file can't be read
+	 */
+	public ExchangeRateHistory(File file, IExchangeRateProvider source) throws IOException {
+		_file = file;
+		_source = source;
+
+		if(file.exists())
+			read();
+	}
+
+	/**
+	 * Gets the rate of a currency pair on a day, fetching the rate of the current day from the source when it isn't stored
+	 *
+	 * @param from The currency to convert ( e.g.: EUR, USD, GBP, ...)
+	 * @param to The currency wanted ( e.g.: EUR, USD, GBP, ...)
+	 * @param date The day of the rate
+	 * @return the conversion rate
+	 * @throws CurrencyConversionException When there is no rate for the day, nor for a previous day
+	 */
+	@Override
+	public double getExchangeRate(String from, String to, Calendar date) throws CurrencyConversionException {
+		int day = FileExchangeRateProvider.toEpochDay(date);
+
+		// The days after the current one use its rate
+		if(date.getTimeInMillis() > System.currentTimeMillis())
+			day = Math.min(day, FileExchangeRateProvider.toEpochDay(Calendar.getInstance()));
+
+		if(from.equals(to))
+			return 1;
+
+		String pair = from + "/" + to;
+		double rate;
+
+		synchronized(this){
+			Series series = _series.get(pair);
+			rate = series == null ? Double.NaN : series.get(day);
+		}
+
+		if(!Double.isNaN(rate))
+			return rate;
+
+		CurrencyConversionException failure = null;
+		Calendar now = Calendar.getInstance();
+
+		// Fetched without the lock, so a slow source doesn't block the other lookups
+		if(_source != null && day == FileExchangeRateProvider.toEpochDay(now)){
+			try {
+				rate = _source.getExchangeRate(from, to, now);
+				put(from, to, now, rate);
+				return rate;
+			} catch (CurrencyConversionException e) {
+				failure = e;
+			}
+		}
+
+		synchronized(this){
+			Series series = _series.get(pair);
+			rate = series == null ? Double.NaN : series.getLatest(day);
+		}
+
+		if(!Double.isNaN(rate))
+			return rate;
+
+		if(failure != null)
+			throw failure;
+
+		throw new CurrencyConversionException("No rate from " + from + " to " + to + " on " + String.format("%1$tY-%1$tm-%1$td", date));
+	}
+
+	/**
+	 * Stores the rate of a currency pair on a day
+	 *
+	 * @param from The currency to convert
+	 * @param to The currency wanted
+	 * @param date The day of the rate
+	 * @param rate The conversion rate
+	 */
+	public synchronized void put(String from, String to, Calendar date, double rate) {
+		put(from, to, FileExchangeRateProvider.toEpochDay(date), rate);
+	}
+
+	/**
+	 * Stores the rates of a currency pair on a period, taken from a file of historical rates, so
+	 * the reports of those days don't need any source. The days already stored are kept.
+	 *
+	 * The rates are taken from a {@link FileExchangeRateProvider}, rather than from the source of the
+	 * store, because the sources of the current rates ignore the date and would store the same rate
+	 * under every day.
+	 *
+	 * @param history The historical rates
+	 * @param from The currency to convert
+	 * @param to The currency wanted
+	 * @param start The first day
+	 * @param end The last day
+	 * @return the number of rates added
+	 * @throws CurrencyConversionException When a rate of the period isn't in the file; no rate is stored then
+	 */
+	public int fill(FileExchangeRateProvider history, String from, String to, Calendar start, Calendar end) throws CurrencyConversionException {
+		String pair = from + "/" + to;
+		int first = FileExchangeRateProvider.toEpochDay(start), last = FileExchangeRateProvider.toEpochDay(end);
+
+		if(last < first)
+			return 0;
+
+		double[] rates = new double[last - first + 1];
+
+		synchronized(this){
+			Series series = _series.get(pair);
+
+			for(int day = first; day <= last; day++)
+				rates[day - first] = series == null ? Double.NaN : series.get(day);
+		}
+
+		// Fetched without the lock, as in getExchangeRate
+		Calendar date = (Calendar) start.clone();
+
+		for(int day = first; day <= last; day++){
+			if(Double.isNaN(rates[day - first]))
+				rates[day - first] = history.getExchangeRate(from, to, date);
+			else
+				rates[day - first] = Double.NaN;
+
+			date.add(Calendar.DAY_OF_MONTH, 1);
+		}
+
+		int added = 0;
+
+		synchronized(this){
+			Series series = _series.get(pair);
+
+			for(int day = first; day <= last; day++){
+				if(!Double.isNaN(rates[day - first]) && (series == null || Double.isNaN(series.get(day)))){
+					put(from, to, day, rates[day - first]);
+					series = _series.get(pair);
+					added++;
+				}
+			}
+		}
+
+		return added;
+	}
+
+	/**
+	 * Writes the rates to the file, if rates were added. The file is replaced at once,
+	 * so readers see either the previous or the new rates.
+	 *
+	 * @throws IOException When the file can't be written
+	 */
+	public synchronized void save() throws IOException {
+		if(!_modified)
+			return;
+
+		File temp = new File(_file.getPath() + ".tmp");
+		OutputStream out = new FileOutputStream(temp);
+
+		try {
+			write(out);
+		} finally {
+			out.close();
+		}
+
+		Files.move(temp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		_modified = false;
+	}
+
+	/**
+	 * Saves the rates
+	 *
+	 * @throws IOException When the file can't be written
+	 */
+	@Override
+	public void close() throws IOException {
+		save();
+	}
+
+	/**
+	 * Stores the rate of a currency pair on a day
+	 */
+	private void put(String from, String to, int day, double rate) {
+		String pair = from + "/" + to;
+		Series series = _series.get(pair);
+
+		if(series == null){
+			series = new Series(day, new double[] { rate });
+			_series.put(pair, series);
+		}
+		else
+			series.set(day, rate);
+
+		_modified = true;
+	}
+
+	/**
+	 * Reads the rates of the file
+	 */
+	private void read() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(_file, "r");
+
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if(in.remaining() < 12 || in.getInt() != MAGIC)
+				throw new IOException("Not an exchange rate history: " + _file);
+
+			if(in.getInt() != VERSION)
+				throw new IOException("Unsupported exchange rate history version: " + _file);
+
+			int pairs = in.getInt();
+
+			for(int i = 0; i < pairs; i++){
+				String pair = readString(in) + "/" + readString(in);
+				int firstDay = in.getInt();
+				double[] rates = new double[in.getInt()];
+
+				in.asDoubleBuffer().get(rates);
+				in.position(in.position() + rates.length * 8);
+
+				_series.put(pair, new Series(firstDay, rates));
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated exchange rate history: " + _file, e);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes the rates
+	 */
+	private void write(OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(_series.size());
+
+		for(Map.Entry<String, Series> entry : _series.entrySet()){
+			String[] currencies = entry.getKey().split("/");
+			Series series = entry.getValue();
+			int length = series.getLength();
+
+			out.writeUTF(currencies[0]);
+			out.writeUTF(currencies[1]);
+			out.writeInt(series._firstDay);
+			out.writeInt(length);
+
+			for(int i = 0; i < length; i++)
+				out.writeDouble(series._rates[i]);
+		}
+
+		out.flush();
+	}
+
+	/**
+	 * Reads a string written by {@link DataOutputStream#writeUTF(String)}, which is in modified UTF-8
+	 */
+	private static String readString(ByteBuffer in) throws IOException {
+		byte[] bytes = new byte[2 + (in.getShort(in.position()) & 0xFFFF)];
+		in.get(bytes);
+
+		return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+	}
+}
@@ -1,25 +1,100 @@
 package challenge_it.racbit.model.reports.exchangeRate;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.Calendar;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import challenge_it.racbit.model.core.IExchangeRateProvider;
 import challenge_it.racbit.model.core.exceptions.CurrencyConversionException;
 
-import com.google.gson.Gson;
-
 /**
  * Class that access to the conversion service
  * 
- * (http://www.google.com/ig/calculator?hl=en&q=1EUR=?GBP -> {lhs: "1 Euro",rhs: "0.801398951 British pounds",error: "",icc: true})
+ * The rates are obtained from an {@link IExchangeRateProvider}, by default the {@link HttpExchangeRateProvider}
+ * (see {@link #setProvider(IExchangeRateProvider)}).
+ * 
+ * The rates are kept by currency pair and day for a configurable time (see {@link #setTimeToLive(long, TimeUnit)}).
+ * When a rate is missing or expired, the first caller fetches it and the concurrent callers for the
+ * same pair wait for that fetch, instead of each one calling the service.
  * 
- *  @author Ctia Moreira e Joo Taborda
+ *  @author Cátia Moreira e João Taborda
  *
  */
 public class ExchangeRateService {
 
+	/**
+	 * The default time a rate is kept: one hour
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 60 * 60 * 1000;
+	
+	/**
+	 * A rate of the cache, which may still be being fetched
+	 */
+	private static class CachedRate extends FutureTask<Double> {
+		
+		/**
+		 * The time (System.nanoTime) when the fetch finished
+		 */
+		private volatile long _fetchedAt;
+		
+		private CachedRate(Callable<Double> fetch) {
+			super(fetch);
+		}
+		
+		@Override
+		protected void done() {
+			_fetchedAt = System.nanoTime();
+		}
+		
+		/**
+		 * Checks if the rate was fetched more than the given time ago
+		 */
+		private boolean isExpired(long now, long timeToLiveNanos) {
+			return isDone() && now - _fetchedAt > timeToLiveNanos;
+		}
+	}
+	
+	/**
+	 * Contains the rates, by currency pair and day
+	 */
+	private static final ConcurrentMap<String, CachedRate> RATES = new ConcurrentHashMap<String, CachedRate>();
+	
+	/**
+	 * The number of requests answered by the cache, the ones that had to fetch the rate and
+	 * the fetches that failed
+	 */
+	private static final AtomicLong HITS = new AtomicLong(), MISSES = new AtomicLong(), FAILURES = new AtomicLong();
+	
+	/**
+	 * The time spent fetching rates, in nanoseconds
+	 */
+	private static final AtomicLong FETCH_TIME = new AtomicLong();
+	
+	/**
+	 * The time a rate is kept, in nanoseconds
+	 */
+	private static volatile long _timeToLive = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIME_TO_LIVE_MILLIS);
+
+	/**
+	 * The source of the rates
+	 */
+	private static volatile IExchangeRateProvider _provider = new HttpExchangeRateProvider();
+	
+	/**
+	 * The view of the cache as a provider
+	 */
+	private static final IExchangeRateProvider CACHED_PROVIDER = new IExchangeRateProvider() {
+		@Override
+		public double getExchangeRate(String from, String to, Calendar date) throws CurrencyConversionException {
+			return getRate(from, to, date);
+		}
+	};
+
 	/**
 	 * Gets the conversion rate from an amount to another
 	 * 
@@ -30,18 +105,180 @@ public class ExchangeRateService {
 	 * @throws CurrencyConversionException When occurs an error on convert result
 	 */
 	public static double getExchangeRate(String from, String to, int numOfDecimals) throws CurrencyConversionException {
-		try {
-			URL url = new URL(String.format("http://www.google.com/ig/calculator?q=1%s=?%s", from, to));
-			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		return round(getRate(from, to, Calendar.getInstance()), numOfDecimals);
+	}
+	
+	/**
+	 * Gets the conversion rate from an amount to another on a given day
+	 * 
+	 * @param provider The source of the rate
+	 * @param from The currency to convert ( e.g.: EUR, USD, GBP, ...)
+	 * @param to The currency wanted ( e.g.: EUR, USD, GBP, ...)
+	 * @param date The day of the rate
+	 * @param numOfDecimals The number of decimals
+	 * @return The conversion rate
+	 * @throws CurrencyConversionException When occurs an error on convert result
+	 */
+	public static double getExchangeRate(IExchangeRateProvider provider, String from, String to, Calendar date, int numOfDecimals) throws CurrencyConversionException {
+		return round(provider.getExchangeRate(from, to, date), numOfDecimals);
+	}
+	
+	/**
+	 * Gets the provider that answers from the cache of this service, which is the one used
+	 * by the report generators by default
+	 * 
+	 * @return the provider
+	 */
+	public static IExchangeRateProvider asProvider() {
+		return CACHED_PROVIDER;
+	}
+	
+	/**
+	 * Sets the source of the rates. The rates of the previous source are discarded.
+	 * 
+	 * @param provider The provider
+	 */
+	public static void setProvider(IExchangeRateProvider provider) {
+		if(provider == null)
+			throw new IllegalArgumentException("provider");
+		
+		_provider = provider;
+		invalidate();
+	}
+	
+	/**
+	 * Gets the rate of a currency pair on a day from the cache, fetching it if needed
+	 * 
+	 * @param from The currency to convert
+	 * @param to The currency wanted
+	 * @param date The day of the rate
+	 * @return The conversion rate, without rounding
+	 * @throws CurrencyConversionException When occurs an error on convert result
+	 */
+	private static double getRate(final String from, final String to, Calendar date) throws CurrencyConversionException {
+		final Calendar day = (Calendar) date.clone();
+		final String pair = from + "/" + to + "/" + (day.get(Calendar.YEAR) * 10000 + (day.get(Calendar.MONTH) + 1) * 100 + day.get(Calendar.DAY_OF_MONTH));
+		
+		while(true){
+			CachedRate rate = RATES.get(pair);
+			
+			if(rate != null && !rate.isExpired(System.nanoTime(), _timeToLive)){
+				HITS.incrementAndGet();
+				return getConversion(pair, rate);
+			}
+			
+			final IExchangeRateProvider provider = _provider;
 			
-			InputStreamReader in = new InputStreamReader((InputStream) connection.getContent());
-			BufferedReader buff = new BufferedReader(in);
+			CachedRate fetch = new CachedRate(new Callable<Double>() {
+				@Override
+				public Double call() throws Exception {
+					return provider.getExchangeRate(from, to, day);
+				}
+			});
 			
-			Conversion c = new Gson().fromJson(buff.readLine(), Conversion.class);
-			return c.exchangeRate(numOfDecimals);
+			boolean installed = rate == null ? RATES.putIfAbsent(pair, fetch) == null : RATES.replace(pair, rate, fetch);
 			
-		} catch (Exception e) {
+			// Otherwise another caller is already fetching it
+			if(installed){
+				MISSES.incrementAndGet();
+				
+				long start = System.nanoTime();
+				fetch.run();
+				FETCH_TIME.addAndGet(System.nanoTime() - start);
+				
+				return getConversion(pair, fetch);
+			}
+		}
+	}
+	
+	/**
+	 * Sets the time a rate is kept before being fetched again
+	 * 
+	 * @param duration The time
+	 * @param unit The unit of the time
+	 */
+	public static void setTimeToLive(long duration, TimeUnit unit) {
+		_timeToLive = unit.toNanos(duration);
+	}
+	
+	/**
+	 * Truncates a rate to a number of decimals, as done for the rates of the service
+	 * 
+	 * @param rate The rate
+	 * @param numOfDecimals The number of decimals
+	 * @return the truncated rate
+	 */
+	public static double round(double rate, int numOfDecimals) {
+		return Conversion.roundToDecimals(rate, numOfDecimals);
+	}
+	
+	/**
+	 * Discards all the rates, so they are fetched again
+	 */
+	public static void invalidate() {
+		RATES.clear();
+	}
+	
+	/**
+	 * Gets the number of requests answered by the cache, including the ones that waited
+	 * for the fetch of another caller
+	 * 
+	 * @return the number of hits
+	 */
+	public static long getHitCount() {
+		return HITS.get();
+	}
+	
+	/**
+	 * Gets the number of requests that fetched the rate from the service
+	 * 
+	 * @return the number of misses
+	 */
+	public static long getMissCount() {
+		return MISSES.get();
+	}
+	
+	/**
+	 * Gets the number of fetches that failed
+	 * 
+	 * @return the number of failures
+	 */
+	public static long getFailureCount() {
+		return FAILURES.get();
+	}
+	
+	/**
+	 * Gets the time spent fetching rates from the service
+	 * 
+	 * @param unit The unit of the result
+	 * @return the total fetch time
+	 */
+	public static long getFetchTime(TimeUnit unit) {
+		return unit.convert(FETCH_TIME.get(), TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Waits for a rate of the cache. A failed fetch is removed, so the next request tries again.
+	 * 
+	 * @param pair The currency pair and day
+	 * @param rate The rate of the cache
+	 * @return The fetched rate
+	 * @throws CurrencyConversionException When the fetch failed
+	 */
+	private static double getConversion(String pair, CachedRate rate) throws CurrencyConversionException {
+		try {
+			return rate.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			throw new CurrencyConversionException(e);
+		} catch (ExecutionException e) {
+			if(RATES.remove(pair, rate))
+				FAILURES.incrementAndGet();
+			
+			if(e.getCause() instanceof CurrencyConversionException)
+				throw (CurrencyConversionException) e.getCause();
+			
+			throw new CurrencyConversionException(e.getCause());
 		}
 	}
 }
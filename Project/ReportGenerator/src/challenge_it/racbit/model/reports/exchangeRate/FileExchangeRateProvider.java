@@ -0,0 +1,390 @@
+package challenge_it.racbit.model.reports.exchangeRate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import challenge_it.racbit.model.core.IExchangeRateProvider;
+import challenge_it.racbit.model.core.exceptions.CurrencyConversionException;
+
+/**
+ * Provider of the rates of a local file of euro reference rates, so the reports can be generated offline.
+ *
+ * The file is one of the historical files of the European Central Bank, either in CSV
+ * (a "Date,USD,JPY,..." header followed by a line of rates per day, "N/A" when a currency has no rate)
+ * or in XML (&lt;Cube time='2013-05-31'&gt; elements with &lt;Cube currency='USD' rate='1.3006'/&gt; elements).
+ * The format is detected from the first character of the file.
+ *
+ * The file is memory-mapped and scanned once, into a sorted array of days and an array of rates per currency,
+ * so a lookup is a binary search on the days. The rate of a day without rates (e.g. a weekend) is the one
+ * of the previous day with rates.
+ */
+public class FileExchangeRateProvider implements IExchangeRateProvider {
+
+	/**
+	 * The currency of the reference rates
+	 */
+	private static final String EURO = "EUR";
+
+	/**
+	 * The days of the file, as days since 1970-01-01, in ascending order
+	 */
+	private final int[] _days;
+
+	/**
+	 * The index of the rates of each currency
+	 */
+	private final Map<String, Integer> _currencies;
+
+	/**
+	 * The rates of each currency against the euro, by currency index and day index (NaN when missing)
+	 */
+	private final double[][] _rates;
+
+	/**
+	 * Creates a provider of the rates of a file
+	 *
+	 * @param file The CSV or XML file of rates
+	 * @throws IOException When the file can't be read or has no rates
+	 */
+	public FileExchangeRateProvider(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		Builder builder = new Builder();
+
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			skipWhitespace(in);
+
+			if(in.hasRemaining() && in.get(in.position()) == '<')
+				readXml(in, builder);
+			else
+				readCsv(in, builder);
+		} finally {
+			raf.close();
+		}
+
+		if(builder._count == 0)
+			throw new IOException("No rates in " + file);
+
+		_currencies = builder._currencies;
+		_days = new int[builder._count];
+		_rates = new double[builder._columns.size()][builder._count];
+
+		// The files have the most recent day first
+		long[] order = new long[builder._count];
+
+		for(int i = 0; i < order.length; i++)
+			order[i] = ((long) builder._days[i] << 32) | i;
+
+		Arrays.sort(order);
+
+		for(int i = 0; i < order.length; i++){
+			int from = (int) order[i];
+			_days[i] = (int) (order[i] >> 32);
+
+			for(int c = 0; c < _rates.length; c++)
+				_rates[c][i] = builder._columns.get(c)[from];
+		}
+	}
+
+	/**
+	 * Gets the rate of a currency pair on a day, or on the previous day with rates
+	 *
+	 * @param from The currency to convert ( e.g.: EUR, USD, GBP, ...)
+	 * @param to The currency wanted ( e.g.: EUR, USD, GBP, ...)
+	 * @param date The day of the rate
+	 * @return the conversion rate
+	 * @throws CurrencyConversionException When the file doesn't have the currencies, or has no rate for them on the day
+	 */
+	@Override
+	public double getExchangeRate(String from, String to, Calendar date) throws CurrencyConversionException {
+		int index = Arrays.binarySearch(_days, toEpochDay(date));
+
+		if(index < 0)
+			index = -index - 2;
+
+		if(index < 0)
+			throw new CurrencyConversionException("No rates before " + String.format("%1$tY-%1$tm-%1$td", date));
+
+		double rate = getEuroRate(to, index) / getEuroRate(from, index);
+
+		if(Double.isNaN(rate))
+			throw new CurrencyConversionException("No rate from " + from + " to " + to + " on " + String.format("%1$tY-%1$tm-%1$td", date));
+
+		return rate;
+	}
+
+	/**
+	 * Gets the rate of a currency against the euro on a day
+	 *
+	 * @param currency The currency
+	 * @param index The index of the day
+	 * @return the rate, NaN when missing
+	 * @throws CurrencyConversionException When the file doesn't have the currency
+	 */
+	private double getEuroRate(String currency, int index) throws CurrencyConversionException {
+		if(EURO.equals(currency))
+			return 1;
+
+		Integer c = _currencies.get(currency);
+
+		if(c == null)
+			throw new CurrencyConversionException("Unknown currency: " + currency);
+
+		return _rates[c][index];
+	}
+
+	/**
+	 * Reads a file in the CSV format
+	 */
+	private static void readCsv(ByteBuffer in, Builder builder) throws IOException {
+		String[] header = readLine(in).split(",");
+		int[] columns = new int[header.length];
+
+		for(int i = 1; i < header.length; i++)
+			columns[i] = builder.getColumn(header[i].trim());
+
+		while(true){
+			skipWhitespace(in);
+
+			if(!in.hasRemaining())
+				return;
+
+			String[] fields = readLine(in).split(",");
+			builder.addDay(parseDay(fields[0].trim()));
+
+			for(int i = 1; i < fields.length && i < header.length; i++){
+				String value = fields[i].trim();
+
+				if(value.length() > 0 && !value.equals("N/A"))
+					builder.setRate(columns[i], parseRate(value));
+			}
+		}
+	}
+
+	/**
+	 * Reads a file in the XML format, taking only the time, currency and rate attributes
+	 */
+	private static void readXml(ByteBuffer in, Builder builder) throws IOException {
+		String currency = null;
+
+		while(in.hasRemaining()){
+			byte b = in.get();
+
+			if(b != '=' || !in.hasRemaining())
+				continue;
+
+			int end = in.position() - 1;
+			byte quote = in.get();
+
+			if(quote != '"' && quote != '\'')
+				continue;
+
+			String name = readName(in, end);
+			String value = readUntil(in, quote);
+
+			if(name.equals("time"))
+				builder.addDay(parseDay(value));
+			else if(name.equals("currency"))
+				currency = value;
+			else if(name.equals("rate") && currency != null){
+				if(builder._count == 0)
+					throw new IOException("Rate without a time");
+
+				builder.setRate(builder.getColumn(currency), parseRate(value));
+				currency = null;
+			}
+		}
+	}
+
+	/**
+	 * Reads the name of the attribute that ends before the given position
+	 */
+	private static String readName(ByteBuffer in, int end) {
+		int start = end;
+
+		while(start > 0 && isNameChar(in.get(start - 1)))
+			start--;
+
+		StringBuilder name = new StringBuilder(end - start);
+
+		for(int i = start; i < end; i++)
+			name.append((char) in.get(i));
+
+		return name.toString();
+	}
+
+	/**
+	 * Checks if a character is part of an attribute name
+	 */
+	private static boolean isNameChar(byte b) {
+		return b > ' ' && b != '<' && b != '>' && b != '"' && b != '\'' && b != '/' && b != '=';
+	}
+
+	/**
+	 * Reads the characters up to a delimiter, or to the end, skipping the delimiter
+	 */
+	private static String readUntil(ByteBuffer in, byte delimiter) {
+		StringBuilder value = new StringBuilder();
+
+		while(in.hasRemaining()){
+			byte b = in.get();
+
+			if(b == delimiter)
+				break;
+
+			value.append((char) b);
+		}
+
+		return value.toString();
+	}
+
+	/**
+	 * Reads a line, without the line terminator
+	 */
+	private static String readLine(ByteBuffer in) {
+		String line = readUntil(in, (byte) '\n');
+
+		return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+	}
+
+	/**
+	 * Skips the whitespace at the current position
+	 */
+	private static void skipWhitespace(ByteBuffer in) {
+		while(in.hasRemaining() && in.get(in.position()) <= ' ')
+			in.get();
+	}
+
+	/**
+	 * Parses a rate
+	 */
+	private static double parseRate(String value) throws IOException {
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid rate: " + value, e);
+		}
+	}
+
+	/**
+	 * Parses a day in the yyyy-MM-dd format
+	 */
+	private static int parseDay(String value) throws IOException {
+		if(value.length() != 10 || value.charAt(4) != '-' || value.charAt(7) != '-')
+			throw new IOException("Invalid date: " + value);
+
+		try {
+			return toEpochDay(Integer.parseInt(value.substring(0, 4)), Integer.parseInt(value.substring(5, 7)), Integer.parseInt(value.substring(8, 10)));
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid date: " + value, e);
+		}
+	}
+
+	/**
+	 * Gets the number of days since 1970-01-01 of the day of a date
+	 *
+	 * @param date The date
+	 * @return the number of days
+	 */
+	static int toEpochDay(Calendar date) {
+		return toEpochDay(date.get(Calendar.YEAR), date.get(Calendar.MONTH) + 1, date.get(Calendar.DAY_OF_MONTH));
+	}
+
+	/**
+	 * Gets the number of days since 1970-01-01 of a date of the gregorian calendar
+	 *
+	 * @param year The year
+	 * @param month The month, from 1 to 12
+	 * @param day The day of the month
+	 * @return the number of days
+	 */
+	private static int toEpochDay(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * Accumulates the rates in the order of the file
+	 */
+	private static class Builder {
+
+		/**
+		 * The index of the rates of each currency
+		 */
+		private final Map<String, Integer> _currencies = new HashMap<String, Integer>();
+
+		/**
+		 * The rates of each currency, by day
+		 */
+		private final List<double[]> _columns = new ArrayList<double[]>();
+
+		/**
+		 * The days read
+		 */
+		private int[] _days = new int[256];
+
+		/**
+		 * The number of days read
+		 */
+		private int _count;
+
+		/**
+		 * Gets the index of the rates of a currency, adding it if needed
+		 */
+		private int getColumn(String currency) {
+			Integer column = _currencies.get(currency);
+
+			if(column == null){
+				column = _columns.size();
+				_currencies.put(currency, column);
+
+				double[] rates = new double[_days.length];
+				Arrays.fill(rates, Double.NaN);
+				_columns.add(rates);
+			}
+
+			return column;
+		}
+
+		/**
+		 * Starts the rates of a day
+		 */
+		private void addDay(int day) {
+			if(_count == _days.length){
+				int capacity = _days.length * 2;
+				_days = Arrays.copyOf(_days, capacity);
+
+				for(int c = 0; c < _columns.size(); c++){
+					double[] rates = Arrays.copyOf(_columns.get(c), capacity);
+					Arrays.fill(rates, _count, capacity, Double.NaN);
+					_columns.set(c, rates);
+				}
+			}
+
+			_days[_count++] = day;
+		}
+
+		/**
+		 * Sets a rate of the current day
+		 */
+		private void setRate(int column, double rate) {
+			_columns.get(column)[_count - 1] = rate;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package challenge_it.racbit.model.reports.exchangeRate;
+
+import java.util.Calendar;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import challenge_it.racbit.model.core.IExchangeRateProvider;
+import challenge_it.racbit.model.core.exceptions.CurrencyConversionException;
+
+/**
+ * Provider of a fixed table of rates, the same for any date (e.g. for tests or offline runs)
+ * 
+ * A pair without a rate uses the inverse of the opposite pair, if there is one.
+ */
+public class FixedExchangeRateProvider implements IExchangeRateProvider {
+
+	/**
+	 * Contains the rates, by currency pair
+	 */
+	private final Map<String, Double> _rates = new ConcurrentHashMap<String, Double>();
+
+	/**
+	 * Creates a provider without rates
+	 */
+	public FixedExchangeRateProvider() {
+	}
+
+	/**
+	 * Creates a provider with a single rate
+	 * 
+	 * @param from The currency to convert
+	 * @param to The currency wanted
+	 * @param rate The conversion rate
+	 */
+	public FixedExchangeRateProvider(String from, String to, double rate) {
+		setRate(from, to, rate);
+	}
+
+	/**
+	 * Sets the rate of a currency pair
+	 * 
+	 * @param from The currency to convert
+	 * @param to The currency wanted
+	 * @param rate The conversion rate
+	 * @return this provider
+	 */
+	public FixedExchangeRateProvider setRate(String from, String to, double rate) {
+		_rates.put(from + "/" + to, rate);
+		return this;
+	}
+
+	/**
+	 * Gets the rate of a currency pair
+	 * 
+	 * @param from The currency to convert ( e.g.: EUR, USD, GBP, ...)
+	 * @param to The currency wanted ( e.g.: EUR, USD, GBP, ...)
+	 * @param date The day of the rate (ignored)
+	 * @return the conversion rate
+	 * @throws CurrencyConversionException When the table doesn't have the pair
+	 */
+	@Override
+	public double getExchangeRate(String from, String to, Calendar date) throws CurrencyConversionException {
+		if(from.equals(to))
+			return 1;
+
+		Double rate = _rates.get(from + "/" + to);
+
+		if(rate != null)
+			return rate;
+
+		rate = _rates.get(to + "/" + from);
+
+		if(rate != null)
+			return 1 / rate;
+
+		throw new CurrencyConversionException("No rate from " + from + " to " + to);
+	}
+}
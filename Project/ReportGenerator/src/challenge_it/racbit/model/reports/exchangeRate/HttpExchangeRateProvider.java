@@ -0,0 +1,85 @@
+package challenge_it.racbit.model.reports.exchangeRate;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Calendar;
+
+import challenge_it.racbit.model.core.IExchangeRateProvider;
+import challenge_it.racbit.model.core.exceptions.CurrencyConversionException;
+
+import com.google.gson.Gson;
+
+/**
+ * Provider that gets the current rates from a conversion web service
+ * 
+ * The service answers with a JSON object read into a {@link Conversion}
+ * (e.g. http://www.google.com/ig/calculator?hl=en&amp;q=1EUR=?GBP -> {lhs: "1 Euro",rhs: "0.801398951 British pounds",error: "",icc: true}).
+ * Each call is a request to the service, so it is usually used through the cache of {@link ExchangeRateService}.
+ */
+public class HttpExchangeRateProvider implements IExchangeRateProvider {
+
+	/**
+	 * The address of the conversion service used by default
+	 */
+	public static final String DEFAULT_URL = "http://www.google.com/ig/calculator?q=1%s=?%s";
+
+	/**
+	 * Parses the service responses. Gson instances are thread-safe.
+	 */
+	private static final Gson GSON = new Gson();
+
+	/**
+	 * The address of the service, with the currency to convert and the currency wanted as format arguments
+	 */
+	private final String _url;
+
+	/**
+	 * Creates a provider of the default conversion service
+	 */
+	public HttpExchangeRateProvider() {
+		this(DEFAULT_URL);
+	}
+
+	/**
+	 * Creates a provider
+	 * 
+	 * @param url The address of the service, with the currency to convert and the currency wanted as format arguments
+	 */
+	public HttpExchangeRateProvider(String url) {
+		_url = url;
+	}
+
+	/**
+	 * Gets the current conversion rate from the service, whatever the date
+	 * 
+	 * @param from The currency to convert ( e.g.: EUR, USD, GBP, ...)
+	 * @param to The currency wanted ( e.g.: EUR, USD, GBP, ...)
+	 * @param date The day of the rate (ignored)
+	 * @return the conversion rate
+	 * @throws CurrencyConversionException When occurs an error on convert result
+	 */
+	@Override
+	public double getExchangeRate(String from, String to, Calendar date) throws CurrencyConversionException {
+		try {
+			URL url = new URL(String.format(_url, from, to));
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			
+			InputStreamReader in = new InputStreamReader((InputStream) connection.getContent());
+			BufferedReader buff = new BufferedReader(in);
+			
+			try {
+				return GSON.fromJson(buff.readLine(), Conversion.class).exchangeRate();
+			} finally {
+				buff.close();
+			}
+			
+		} catch (CurrencyConversionException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new CurrencyConversionException(e);
+		}
+	}
+}
@@ -0,0 +1,390 @@
+package challenge_it.racbit.model.reports.exchangeRate;
+
+import java.io.Closeable;
+import java.util.Calendar;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import challenge_it.racbit.model.core.IExchangeRateProvider;
+import challenge_it.racbit.model.core.exceptions.CurrencyConversionException;
+
+/**
+ * Provider that keeps the current rates of a set of currency pairs warm, refreshing them in the background.
+ *
+ * A lookup returns the latest known rate at once, without waiting for the source provider. When that rate
+ * is older than the refresh interval a refresh is started in the background, and the rates of the added
+ * pairs are also refreshed periodically, so a slow source doesn't delay the reports. Only the first lookup
+ * of a pair that was never fetched waits for the source.
+ *
+ * While the source keeps failing the last rate is still used, up to the hard staleness limit: an older rate
+ * fails the lookup, and so the report generation.
+ *
+ * The rates are the current ones, so the date of the lookups is ignored.
+ */
+public class RefreshingExchangeRateProvider implements IExchangeRateProvider, Closeable {
+
+	/**
+	 * Notified of the background refreshes
+	 */
+	public interface Listener {
+
+		/**
+		 * Called after a rate is refreshed
+		 *
+		 * @param from The currency to convert
+		 * @param to The currency wanted
+		 * @param rate The new rate
+		 */
+		void refreshed(String from, String to, Rate rate);
+
+		/**
+		 * Called when a rate couldn't be refreshed, so the previous one is kept
+		 *
+		 * @param from The currency to convert
+		 * @param to The currency wanted
+		 * @param e The reason of the failure
+		 */
+		void refreshFailed(String from, String to, CurrencyConversionException e);
+	}
+
+	/**
+	 * A rate and the time it was fetched
+	 */
+	public static final class Rate {
+
+		/**
+		 * The conversion rate
+		 */
+		private final double _value;
+
+		/**
+		 * The time (System.nanoTime) when the rate was fetched
+		 */
+		private final long _fetchedAt;
+
+		private Rate(double value, long fetchedAt) {
+			_value = value;
+			_fetchedAt = fetchedAt;
+		}
+
+		/**
+		 * Gets the conversion rate
+		 *
+		 * @return the rate
+		 */
+		public double getValue() {
+			return _value;
+		}
+
+		/**
+		 * Gets the time since the rate was fetched
+		 *
+		 * @param unit The unit of the result
+		 * @return the age of the rate
+		 */
+		public long getAge(TimeUnit unit) {
+			return unit.convert(System.nanoTime() - _fetchedAt, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * The rate of a currency pair
+	 */
+	private static class Entry {
+
+		/**
+		 * The currencies
+		 */
+		private final String _from, _to;
+
+		/**
+		 * The latest rate, null until the first fetch succeeds
+		 */
+		private volatile Rate _rate;
+
+		/**
+		 * States that a refresh is running, so no other one is started
+		 */
+		private final AtomicBoolean _refreshing = new AtomicBoolean();
+
+		private Entry(String from, String to) {
+			_from = from;
+			_to = to;
+		}
+	}
+
+	/**
+	 * Logs the failures of the listener
+	 */
+	private static final Logger LOGGER = Logger.getLogger(RefreshingExchangeRateProvider.class.getName());
+
+	/**
+	 * The source of the rates
+	 */
+	private final IExchangeRateProvider _source;
+
+	/**
+	 * Runs the refreshes
+	 */
+	private final ScheduledExecutorService _executor;
+
+	/**
+	 * The age after which a rate is refreshed, in nanoseconds
+	 */
+	private final long _refreshInterval;
+
+	/**
+	 * The age after which a rate is no longer used, in nanoseconds
+	 */
+	private final long _maxStaleness;
+
+	/**
+	 * Contains the rates, by currency pair
+	 */
+	private final ConcurrentMap<String, Entry> _entries = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 * The number of refreshes that failed
+	 */
+	private final AtomicLong _failures = new AtomicLong();
+
+	/**
+	 * Notified of the refreshes, or null
+	 */
+	private volatile Listener _listener;
+
+	/**
+	 * Creates a provider that refreshes the rates in a daemon thread of its own
+	 *
+	 * @param source The source of the rates
+	 * @param refreshInterval The age after which a rate is refreshed
+	 * @param maxStaleness The age after which a rate is no longer used
+	 * @param unit The unit of the times
+	 */
+	public RefreshingExchangeRateProvider(IExchangeRateProvider source, long refreshInterval, long maxStaleness, TimeUnit unit) {
+		this(source, refreshInterval, maxStaleness, unit, Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread refresher = new Thread(r, "ExchangeRate refresher");
+				refresher.setDaemon(true);
+				return refresher;
+			}
+		}));
+	}
+
+	/**
+	 * Creates a provider
+	 *
+	 * @param source The source of the rates
+	 * @param refreshInterval The age after which a rate is refreshed
+	 * @param maxStaleness The age after which a rate is no longer used
+	 * @param unit The unit of the times
+	 * @param executor Runs the refreshes. It is shut down when the provider is closed.
+	 * @throws IllegalArgumentException if the refresh interval isn't positive or is greater than the staleness limit
+	 */
+	public RefreshingExchangeRateProvider(IExchangeRateProvider source, long refreshInterval, long maxStaleness, TimeUnit unit, ScheduledExecutorService executor) {
+		if(refreshInterval <= 0 || maxStaleness < refreshInterval)
+			throw new IllegalArgumentException();
+
+		_source = source;
+		_executor = executor;
+		_refreshInterval = unit.toNanos(refreshInterval);
+		_maxStaleness = unit.toNanos(maxStaleness);
+
+		_executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				for(Entry entry : _entries.values())
+					if(entry._refreshing.compareAndSet(false, true))
+						refresh(entry);
+			}
+		}, refreshInterval, refreshInterval, unit);
+	}
+
+	/**
+	 * Sets the listener of the refreshes
+	 *
+	 * @param listener The listener, or null
+	 */
+	public void setListener(Listener listener) {
+		_listener = listener;
+	}
+
+	/**
+	 * Adds a currency pair to the ones kept warm, fetching its rate in the background
+	 *
+	 * @param from The currency to convert ( e.g.: EUR, USD, GBP, ...)
+	 * @param to The currency wanted ( e.g.: EUR, USD, GBP, ...)
+	 * @return this provider
+	 */
+	public RefreshingExchangeRateProvider addPair(String from, String to) {
+		refreshAsync(getEntry(from, to));
+		return this;
+	}
+
+	/**
+	 * Gets the latest rate of a currency pair, fetching it if it was never fetched
+	 *
+	 * @param from The currency to convert ( e.g.: EUR, USD, GBP, ...)
+	 * @param to The currency wanted ( e.g.: EUR, USD, GBP, ...)
+	 * @return the rate and its age
+	 * @throws CurrencyConversionException When the rate can't be fetched, or is older than the staleness limit
+	 */
+	public Rate getRate(String from, String to) throws CurrencyConversionException {
+		Entry entry = getEntry(from, to);
+		Rate rate = entry._rate;
+
+		if(rate == null)
+			rate = fetchFirst(entry);
+
+		long age = System.nanoTime() - rate._fetchedAt;
+
+		if(age > _refreshInterval)
+			refreshAsync(entry);
+
+		if(age > _maxStaleness)
+			throw new CurrencyConversionException("The rate from " + from + " to " + to + " is " + TimeUnit.NANOSECONDS.toMillis(age) + " ms old");
+
+		return rate;
+	}
+
+	/**
+	 * Gets the latest rate of a currency pair, whatever the date
+	 *
+	 * @param from The currency to convert ( e.g.: EUR, USD, GBP, ...)
+	 * @param to The currency wanted ( e.g.: EUR, USD, GBP, ...)
+	 * @param date The day of the rate (ignored)
+	 * @return the conversion rate
+	 * @throws CurrencyConversionException When the rate can't be fetched, or is older than the staleness limit
+	 */
+	@Override
+	public double getExchangeRate(String from, String to, Calendar date) throws CurrencyConversionException {
+		return getRate(from, to).getValue();
+	}
+
+	/**
+	 * Gets the number of refreshes that failed
+	 *
+	 * @return the number of failures
+	 */
+	public long getFailureCount() {
+		return _failures.get();
+	}
+
+	/**
+	 * Stops the refreshes. The known rates can still be used until they are older than the staleness limit.
+	 */
+	@Override
+	public void close() {
+		_executor.shutdownNow();
+	}
+
+	/**
+	 * Gets the entry of a currency pair, adding it if needed
+	 */
+	private Entry getEntry(String from, String to) {
+		String pair = from + "/" + to;
+		Entry entry = _entries.get(pair);
+
+		if(entry == null){
+			Entry added = new Entry(from, to);
+			entry = _entries.putIfAbsent(pair, added);
+
+			if(entry == null)
+				entry = added;
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Fetches the first rate of a pair in the calling thread. Concurrent callers wait for the same fetch.
+	 */
+	private Rate fetchFirst(Entry entry) throws CurrencyConversionException {
+		synchronized(entry){
+			if(entry._rate == null)
+				entry._rate = new Rate(_source.getExchangeRate(entry._from, entry._to, Calendar.getInstance()), System.nanoTime());
+
+			return entry._rate;
+		}
+	}
+
+	/**
+	 * Starts a refresh of a rate in the background, unless one is already running
+	 */
+	private void refreshAsync(final Entry entry) {
+		if(!entry._refreshing.compareAndSet(false, true))
+			return;
+
+		try {
+			_executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					refresh(entry);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// The provider was closed
+			entry._refreshing.set(false);
+		}
+	}
+
+	/**
+	 * Refreshes a rate, keeping the previous one if the source fails
+	 */
+	private void refresh(Entry entry) {
+		Rate rate;
+
+		try {
+			rate = new Rate(_source.getExchangeRate(entry._from, entry._to, Calendar.getInstance()), System.nanoTime());
+			entry._rate = rate;
+		} catch (CurrencyConversionException e) {
+			notifyFailure(entry, e);
+			return;
+		} catch (RuntimeException e) {
+			// Otherwise the periodic refreshes would stop
+			notifyFailure(entry, new CurrencyConversionException(e));
+			return;
+		} finally {
+			entry._refreshing.set(false);
+		}
+
+		Listener listener = _listener;
+
+		if(listener != null){
+			try {
+				listener.refreshed(entry._from, entry._to, rate);
+			} catch (RuntimeException e) {
+				// The rate was refreshed; a failing listener must not stop the periodic refreshes
+				LOGGER.log(Level.WARNING, "The listener failed on the refresh of " + entry._from + "/" + entry._to, e);
+			}
+		}
+	}
+
+	/**
+	 * Counts a failed refresh and notifies the listener
+	 */
+	private void notifyFailure(Entry entry, CurrencyConversionException e) {
+		_failures.incrementAndGet();
+
+		Listener listener = _listener;
+
+		if(listener != null){
+			try {
+				listener.refreshFailed(entry._from, entry._to, e);
+			} catch (RuntimeException failure) {
+				// A failing listener must not stop the periodic refreshes
+				LOGGER.log(Level.WARNING, "The listener failed on the failed refresh of " + entry._from + "/" + entry._to, failure);
+			}
+		}
+	}
+}
@@ -1,39 +1,49 @@
 package challenge_it.racbit.model.reports.generators;
 
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.poi.hssf.util.HSSFColor;
-import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.IndexedColors;
-import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.usermodel.XSSFFormulaEvaluator;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import challenge_it.racbit.model.core.Country;
+import challenge_it.racbit.model.core.IExchangeRateProvider;
 import challenge_it.racbit.model.core.IReportGenerator;
+import challenge_it.racbit.model.core.IReportSink;
 import challenge_it.racbit.model.core.Product;
-import challenge_it.racbit.model.core.Product.SupplierType;
+import challenge_it.racbit.model.core.ProductBatch;
 import challenge_it.racbit.model.core.exceptions.CurrencyConversionException;
 import challenge_it.racbit.model.core.exceptions.ReportGenerationException;
 import challenge_it.racbit.model.reports.configurations.BenchmarkingReportConfiguration;
 import challenge_it.racbit.model.reports.configurations.BenchmarkingReportConfigurationReader;
+import challenge_it.racbit.model.reports.configurations.ConfigurationRegistry;
 import challenge_it.racbit.model.reports.exchangeRate.ExchangeRateService;
 import challenge_it.racbit.model.reports.generators.utils.BenchmarkingReportInfo;
 import challenge_it.racbit.model.reports.generators.utils.BenchmarkingReportInfo.BenchmarkingDay;
 import challenge_it.racbit.model.reports.generators.utils.BenchmarkingReportInfo.BenchmarkingGroup;
 import challenge_it.racbit.model.reports.generators.utils.BenchmarkingReportInfo.BenchmarkingLocation;
+import challenge_it.racbit.model.reports.generators.utils.CellStyleDescriptor;
 import challenge_it.racbit.model.reports.generators.utils.CellStyles;
+import challenge_it.racbit.model.reports.generators.utils.ColumnWidthPlanner;
 import challenge_it.racbit.model.reports.generators.utils.CrossReference;
-import challenge_it.racbit.model.reports.generators.utils.IPredicate;
+import challenge_it.racbit.model.reports.generators.utils.ReportGrid;
+import challenge_it.racbit.model.reports.generators.utils.ReportSkeleton;
+import challenge_it.racbit.model.reports.generators.utils.SheetReportGrid;
+import challenge_it.racbit.model.reports.generators.utils.SpreadsheetMLWriter;
+import challenge_it.racbit.model.reports.sinks.DirectoryReportSink;
 
 
 public class BenchmarkingReportGenerator implements IReportGenerator {
@@ -54,82 +64,276 @@ public class BenchmarkingReportGenerator implements IReportGenerator {
 	 */
 	private static final String XML_TRANSFORMATION = "configuration/ReportTransformation.xsl";
 	
+	/**
+	 * Value of the row access window size that states that the whole report is kept in memory
+	 */
+	private static final int IN_MEMORY = 0;
+	
+	/**
+	 * Identify the fixed values of the report
+	 */
+	private static final int CONSULTATION_DATE = 0, HOUR = 1, PICK_UP_DATE = 2, RATE = 3;
+
+	/**
+	 * The number of rows kept in memory while the report is written. {@link #IN_MEMORY}
+	 * means that an in-memory XSSFWorkbook is used; any other value means that a streaming
+	 * SXSSFWorkbook is used, which flushes the older rows to disk as new ones are written.
+	 */
+	private final int _rowAccessWindowSize;
+
+	/**
+	 * States that the report is written straight to SpreadsheetML, without POI's object model
+	 */
+	private final boolean _spreadsheetML;
+
+	/**
+	 * The source of the exchange rate
+	 */
+	private final IExchangeRateProvider _exchangeRateProvider;
+
+	/**
+	 * Creates a generator that builds the whole report in memory
+	 */
+	public BenchmarkingReportGenerator(){
+		this(IN_MEMORY);
+	}
+
+	/**
+	 * Creates a generator that streams the report rows, keeping in memory only the
+	 * given number of rows. Memory usage does not depend on the number of rows of the report.
+	 *
+	 * @param rowAccessWindowSize The number of rows kept in memory, or 0 to keep the whole report in memory
+	 * @throws IllegalArgumentException if {@code rowAccessWindowSize} is negative
+	 */
+	public BenchmarkingReportGenerator(int rowAccessWindowSize){
+		this(rowAccessWindowSize, false);
+	}
+
+	/**
+	 * Creates a generator that may write the report straight to SpreadsheetML. That back end
+	 * keeps a few bytes for each cell instead of POI's rows and cells, and streams the rows
+	 * to the file as they leave the row access window.
+	 *
+	 * @param rowAccessWindowSize The number of rows kept in memory, or 0 to keep the whole report in memory
+	 * @param spreadsheetML States that the report is written straight to SpreadsheetML
+	 * @throws IllegalArgumentException if {@code rowAccessWindowSize} is negative
+	 */
+	public BenchmarkingReportGenerator(int rowAccessWindowSize, boolean spreadsheetML){
+		this(rowAccessWindowSize, spreadsheetML, ExchangeRateService.asProvider());
+	}
+
+	/**
+	 * Creates a generator that takes the exchange rate from the given provider
+	 *
+	 * @param rowAccessWindowSize The number of rows kept in memory, or 0 to keep the whole report in memory
+	 * @param spreadsheetML States that the report is written straight to SpreadsheetML
+	 * @param exchangeRateProvider The source of the exchange rate
+	 * @throws IllegalArgumentException if {@code rowAccessWindowSize} is negative
+	 */
+	public BenchmarkingReportGenerator(int rowAccessWindowSize, boolean spreadsheetML, IExchangeRateProvider exchangeRateProvider){
+		if(rowAccessWindowSize < 0)
+			throw new IllegalArgumentException();
+
+		_rowAccessWindowSize = rowAccessWindowSize;
+		_spreadsheetML = spreadsheetML;
+		_exchangeRateProvider = exchangeRateProvider;
+	}
+
+	/**
+	 * Generates the report in the working directory
+	 * 
+	 * @param reportDate The report date
+	 * @param country The country of the products
+	 * @param results The products to be included in the report
+	 * @throws ReportGenerationException, CurrencyConversionException
+	 */
 	@Override
-	public void generate(Calendar reportDate, Country country, Iterable<Product> results) throws ReportGenerationException,
+	public void generate(Calendar reportDate, Country country, Iterable<Product> results) throws ReportGenerationException, CurrencyConversionException {
+		generate(reportDate, country, results, new DirectoryReportSink(new File(".")));
+	}
+	
+	/**
+	 * Generates the Benchmarking report
+	 *
+	 * Rows are always written in increasing order (fixed values first, then the regular
+	 * locations and then the low cost ones), so the report can be streamed.
+	 *
+	 * @param reportDate The report date
+	 * @param country The country of the products
+	 * @param results The products to be included in the report
+	 * @param sink The destination of the report
+	 * @throws ReportGenerationException, CurrencyConversionException
+	 */
+	@Override
+	public void generate(Calendar reportDate, Country country, Iterable<Product> results, IReportSink sink) throws ReportGenerationException,
 			CurrencyConversionException {
 		
-		HashMap<String, CrossReference> brokers = new HashMap<String, CrossReference>();
+		HashMap<Integer, CrossReference> brokers = new HashMap<Integer, CrossReference>();
 		
-		BenchmarkingReportConfiguration config = (BenchmarkingReportConfiguration) new BenchmarkingReportConfigurationReader().read(XML_CONFIGURATION, XML_SCHEMA, XML_TRANSFORMATION);
+		final BenchmarkingReportConfiguration config = (BenchmarkingReportConfiguration) ConfigurationRegistry.getDefault().get(XML_CONFIGURATION, XML_SCHEMA, XML_TRANSFORMATION, new BenchmarkingReportConfigurationReader());
 		
 		BenchmarkingReportInfo info = processInformation(config, results, brokers);
 		
-		Workbook workbook = new XSSFWorkbook();
-		Sheet sheet = workbook.createSheet();
-		int offset = -1;
-		
-		offset = fill(workbook, sheet, config, brokers, info.getRegulars(), HSSFColor.LIME.index, offset);
-		
-		fill(workbook, sheet, config, brokers, info.getLowCosts(), HSSFColor.PINK.index, offset+1);
-		
-		
-		setFixedValues(workbook, sheet, config, reportDate);
+		ReportSkeleton skeleton = ReportSkeleton.get(XML_CONFIGURATION, config, new ReportSkeleton.Renderer() {
+			@Override
+			public void render(CellStyles styles, Sheet sheet) {
+				setSkeleton(new SheetReportGrid(styles, sheet), config);
+			}
+		});
 		
 		try {
-			saveFile(workbook, reportDate, country);
+			if(_spreadsheetML){
+				SpreadsheetMLWriter writer = new SpreadsheetMLWriter(sink.open(getFileName(reportDate)), _rowAccessWindowSize);
+		
+				try {
+					ColumnWidthPlanner columnWidths = new ColumnWidthPlanner(SpreadsheetMLWriter.DEFAULT_FONT_NAME, SpreadsheetMLWriter.DEFAULT_FONT_SIZE);
+					write(writer, columnWidths, skeleton, config, brokers, info, reportDate);
+				} finally {
+					writer.close();
+				}
+			}
+			else {
+				Workbook workbook = createWorkbook();
+
+				try {
+					CellStyles styles = new CellStyles(workbook);
+					write(new SheetReportGrid(styles, workbook.createSheet()), new ColumnWidthPlanner(workbook), skeleton, config, brokers, info, reportDate);
+					saveFile(workbook, sink, getFileName(reportDate));
+				} finally {
+					if(workbook instanceof SXSSFWorkbook)
+						((SXSSFWorkbook) workbook).dispose();
+				}
+			}
 		} catch (IOException e) {
 			throw new ReportGenerationException(e);
 		}
 	}
 
-	private int fill(Workbook workbook, Sheet sheet, BenchmarkingReportConfiguration config, HashMap<String, CrossReference> brokers, Map<String, BenchmarkingLocation> locations, short color, int offset) {
+	/**
+	 * Creates the workbook according to the row access window size
+	 *
+	 * @return An in-memory workbook, or a streaming one
+	 */
+	private Workbook createWorkbook() {
+		if(_rowAccessWindowSize == IN_MEMORY)
+			return new XSSFWorkbook();
+
+		return new SXSSFWorkbook(_rowAccessWindowSize);
+	}
+
+	/**
+	 * Writes the report in the given grid
+	 *
+	 * @param grid The grid where the report is written
+	 * @param columnWidths The planner of the columns' width
+	 * @param skeleton The static part of the report
+	 * @param config The object that holds the information read from XML file
+	 * @param brokers The column of each broker, by broker id
+	 * @param info The locations to fill
+	 * @param reportDate The report date
+	 * @throws CurrencyConversionException
+	 */
+	private void write(ReportGrid grid, ColumnWidthPlanner columnWidths, ReportSkeleton skeleton, BenchmarkingReportConfiguration config,
+			HashMap<Integer, CrossReference> brokers, BenchmarkingReportInfo info, Calendar reportDate) throws CurrencyConversionException {
+		int offset = -1;
+		
+		// The widths are set before any row is written, as a streamed sheet requires
+		planColumnWidths(columnWidths, config, info.getRegulars(), HSSFColor.LIME.index);
+		planColumnWidths(columnWidths, config, info.getLowCosts(), HSSFColor.PINK.index);
+		columnWidths.apply(grid);
+
+		skeleton.stamp(grid);
+		setFixedValues(grid, config, reportDate);
+
+		offset = fill(grid, config, brokers, info.getBatch(), info.getRegulars(), HSSFColor.LIME.index, offset);
+
+		fill(grid, config, brokers, info.getBatch(), info.getLowCosts(), HSSFColor.PINK.index, offset+1);
+	}
+
+	/**
+	 * Records the locations' names in the planner of the columns' width
+	 *
+	 * @param columnWidths The planner of the columns' width
+	 * @param config The object that holds the information read from XML file
+	 * @param locations The locations to fill
+	 * @param color The background color of the locations' names
+	 */
+	private void planColumnWidths(ColumnWidthPlanner columnWidths, BenchmarkingReportConfiguration config, Map<String, BenchmarkingLocation> locations, short color) {
+		for (BenchmarkingLocation location : locations.values())
+			columnWidths.record(config.getLocationCell().getColumn(), location.getLocationName(), getLocationStyle(color));
+	}
+
+	/**
+	 * Gets the style of the locations' names
+	 *
+	 * @param color The background color of the locations' names
+	 * @return the style attributes
+	 */
+	private CellStyleDescriptor getLocationStyle(short color) {
+		return CellStyleDescriptor.DEFAULT.withColor(HSSFColor.WHITE.index, CellStyles.TEXT_SIZE_MEDIUM).withBackground(color);
+	}
+
+	/**
+	 * Fills the table of each location. The rows are written in increasing order and never visited again:
+	 * the corners of each location's table are computed before its rows are written, so the borders
+	 * and the currency cell are set while the rows are being written.
+	 *
+	 * @param grid The grid where the report is written
+	 * @param config The object that holds the information read from XML file
+	 * @param brokers The column of each broker, by broker id
+	 * @param batch The products whose rows are in the locations
+	 * @param locations The locations to fill
+	 * @param color The background color of the locations' names
+	 * @param offset The offset of the row before the first one to fill
+	 * @return The offset of the last row filled
+	 */
+	private int fill(ReportGrid grid, BenchmarkingReportConfiguration config, HashMap<Integer, CrossReference> brokers, ProductBatch batch, Map<String, BenchmarkingLocation> locations, short color, int offset) {
 		
-		Row row = null;
+		int row = -1;
 		int groupOffset = offset+1;
+		CellStyleDescriptor locationStyle = getLocationStyle(color);
+		ProductBatch.Cursor products = batch.cursor();
 		
 		for (BenchmarkingLocation location : locations.values()) {
+
+			//These CrossReference objects are used to indicate the corners of the table
+			CrossReference locationCellNameIdxFirst = new CrossReference((config.getLocationCell().getRow()+1) + groupOffset, config.getLocationCell().getColumn());
+			CrossReference lastCellValueIdxLast = new CrossReference((config.getLocationCell().getRow()+1) + (getNumberOfRows(location)-1) + groupOffset, (brokers.size()*2)+4); //TO CHANGE
+			
 			for(BenchmarkingGroup group : location.getGroups().values()){		
 				for(BenchmarkingDay day : group.getDays().values()){
 					offset++;
 					
-					row = sheet.getRow(config.getGridValuesFirstCell().getRow() + offset);
-					
-					if(row == null)
-						row = sheet.createRow(config.getGridValuesFirstCell().getRow() + offset);
+					row = config.getGridValuesFirstCell().getRow() + offset;
 					
-					Cell dayCell = row.createCell(config.getNumberOfDaysCell().getColumn());
-					dayCell.setCellValue(day.getNumberOfDays());
-					dayCell.setCellStyle(CellStyles.setDataFormat(workbook, CellStyles.setThinBorders(CellStyles.setBold(CellStyles.getDefaultCellStyle(workbook), CellStyles.TEXT_SIZE_SMALL, workbook)), CellStyles.DECIMAL_POINT_NONE));
+					int column = config.getNumberOfDaysCell().getColumn();
+					grid.setCell(row, column, day.getNumberOfDays(), setTableBorders(CellStyleDescriptor.DEFAULT.withBold(CellStyles.TEXT_SIZE_SMALL).withThinBorders().withDataFormat(CellStyles.DECIMAL_POINT_NONE), row, column, locationCellNameIdxFirst, lastCellValueIdxLast));
 					
-					Cell groupCell = row.createCell(config.getGroupCell().getColumn());
-					groupCell.setCellValue(group.getGroupName());
-					groupCell.setCellStyle(CellStyles.setThinBorders(CellStyles.setBold(CellStyles.getDefaultCellStyle(workbook), CellStyles.TEXT_SIZE_SMALL, workbook)));
+					column = config.getGroupCell().getColumn();
+					grid.setCell(row, column, group.getGroupName(), setTableBorders(CellStyleDescriptor.DEFAULT.withBold(CellStyles.TEXT_SIZE_SMALL).withThinBorders(), row, column, locationCellNameIdxFirst, lastCellValueIdxLast));
 					
-					Cell locationCell = row.createCell(config.getLocationCell().getColumn());
-					locationCell.setCellValue(location.getLocationName());
-					locationCell.setCellStyle(CellStyles.setBackground(CellStyles.setColor(CellStyles.getDefaultCellStyle(workbook), HSSFColor.WHITE.index, CellStyles.TEXT_SIZE_MEDIUM, workbook), color));
-					sheet.autoSizeColumn(config.getLocationCell().getColumn(), true);
+					column = config.getLocationCell().getColumn();
+					grid.setCell(row, column, location.getLocationName(), setTableBorders(locationStyle, row, column, locationCellNameIdxFirst, lastCellValueIdxLast));
 					
-					for (Product product : day.getProducts().values()) {
-						CrossReference crossReference = brokers.get(product.getBroker());
+					for (int i = 0; i < day.size(); i++) {
+						ProductBatch.Cursor product = products.moveTo(day.getRow(i));
+						CrossReference crossReference = brokers.get(product.getBrokerId());
+						CellStyleDescriptor productStyle = CellStyleDescriptor.DEFAULT.withThinBorders().withBackground(HSSFColor.LIGHT_GREEN.index);
 												
-						Cell productPrice = row.createCell(crossReference.getColumn());
-						productPrice.setCellValue(product.getPrice());
-						productPrice.setCellType(Cell.CELL_TYPE_NUMERIC);
-						
-						Cell productSupplier = row.createCell(crossReference.getColumn()+1);
-						productSupplier.setCellValue(product.getSupplier());
-						
-						productPrice.setCellStyle(CellStyles.setBackground(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook)), HSSFColor.LIGHT_GREEN.index));
-						productSupplier.setCellStyle(CellStyles.setBackground(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook)), HSSFColor.LIGHT_GREEN.index));
-						
+						grid.setCell(row, crossReference.getColumn(), product.getPrice(), setTableBorders(productStyle, row, crossReference.getColumn(), locationCellNameIdxFirst, lastCellValueIdxLast));
+						grid.setCell(row, crossReference.getColumn()+1, product.getSupplier(), setTableBorders(productStyle, row, crossReference.getColumn()+1, locationCellNameIdxFirst, lastCellValueIdxLast));
 					}
+
+					if(row == locationCellNameIdxFirst.getRow())
+						setCurrencyCell(grid, row, locationCellNameIdxFirst, lastCellValueIdxLast, "£", HSSFColor.YELLOW.index);
+
+					setTableBorders(grid, row, locationCellNameIdxFirst, lastCellValueIdxLast);
 				}
 
 				if(group.getDays().size() > 1){
-					sheet.addMergedRegion(new CellRangeAddress(
-						row.getRowNum()-group.getDays().size()+1, //first row (0-based)
-						row.getRowNum(), //last row  (0-based)
+					grid.addMergedRegion(new CellRangeAddress(
+						row-group.getDays().size()+1, //first row (0-based)
+						row, //last row  (0-based)
 						config.getGroupCell().getColumn(), //first column (0-based)
 						config.getGroupCell().getColumn()  //last column  (0-based)
 					));
@@ -137,10 +341,6 @@ public class BenchmarkingReportGenerator implements IReportGenerator {
 			}
 			offset++;	
 			
-			//These CrossReference objects are used to indicate the corners of the table
-			CrossReference locationCellNameIdxFirst = new CrossReference((config.getLocationCell().getRow()+1) + groupOffset, config.getLocationCell().getColumn());
-			CrossReference lastCellValueIdxLast = new CrossReference((config.getLocationCell().getRow()+1) + (offset-groupOffset-1) + groupOffset, (brokers.size()*2)+4); //TO CHANGE
-			
 			//merge location name cell
 //			sheet.addMergedRegion(new CellRangeAddress(
 //					locationCellNameIdxFirst.getRow(), //first row (0-based)
@@ -151,11 +351,6 @@ public class BenchmarkingReportGenerator implements IReportGenerator {
 
 			groupOffset = offset+1; //update group offset	
 			
-			setTableBorders(workbook, sheet, locationCellNameIdxFirst, lastCellValueIdxLast);
-			
-			setCurrencyCell(workbook, sheet, locationCellNameIdxFirst, lastCellValueIdxLast, "", HSSFColor.YELLOW.index);
-			
-			
 			//merge currency cell
 			// TODO : Faz merge da location e nao do currency
 //			sheet.addMergedRegion(new CellRangeAddress(
@@ -169,15 +364,39 @@ public class BenchmarkingReportGenerator implements IReportGenerator {
 		return offset;
 	}
 
-	private void setCurrencyCell(Workbook workbook, Sheet sheet,
+	/**
+	 * Gets the number of rows used by a location (one for each number of days of each group)
+	 *
+	 * @param location The location
+	 * @return The number of rows
+	 */
+	private int getNumberOfRows(BenchmarkingLocation location) {
+		int rows = 0;
+
+		for(BenchmarkingGroup group : location.getGroups().values())
+			rows += group.getDays().size();
+
+		return rows;
+	}
+
+	/**
+	 * Sets the currency symbol in the first row of the location's table and merges it
+	 * along the table rows
+	 *
+	 * @param grid The grid where the report is written
+	 * @param row The first row of the table
+	 * @param locationCellNameIdxFirst The upper left corner of the table
+	 * @param lastCellValueIdxLast The lower right corner of the table
+	 * @param symbol The currency symbol
+	 * @param color The background color of the cell
+	 */
+	private void setCurrencyCell(ReportGrid grid, int row,
 			CrossReference locationCellNameIdxFirst,
 			CrossReference lastCellValueIdxLast, String symbol, short color) {
 		
-		Cell currencySymbol = sheet.getRow(locationCellNameIdxFirst.getRow()).getCell(locationCellNameIdxFirst.getColumn()-1);
-		currencySymbol.setCellValue(symbol);
-		currencySymbol.setCellStyle(CellStyles.setBackground(CellStyles.setBold(CellStyles.getDefaultCellStyle(workbook), CellStyles.TEXT_SIZE_MEDIUM, workbook), color));
+		grid.setCell(row, locationCellNameIdxFirst.getColumn()-1, symbol, CellStyleDescriptor.DEFAULT.withBold(CellStyles.TEXT_SIZE_MEDIUM).withBackground(color));
 				
-		sheet.addMergedRegion(new CellRangeAddress(
+		grid.addMergedRegion(new CellRangeAddress(
 				locationCellNameIdxFirst.getRow(), //first row (0-based)
 				lastCellValueIdxLast.getRow(), //last row  (0-based)
 				locationCellNameIdxFirst.getColumn()-1, //first column (0-based)
@@ -185,95 +404,69 @@ public class BenchmarkingReportGenerator implements IReportGenerator {
 			));
 	}
 
-	private void setTableBorders(Workbook workbook, Sheet sheet, CrossReference locationCellNameIdxFirst,
+	/**
+	 * Creates the cells of the row that are missing on the table's outline, so that
+	 * they get the medium borders of the table
+	 *
+	 * @param grid The grid where the report is written
+	 * @param row The row of the table
+	 * @param locationCellNameIdxFirst The upper left corner of the table
+	 * @param lastCellValueIdxLast The lower right corner of the table
+	 */
+	private void setTableBorders(ReportGrid grid, int row, CrossReference locationCellNameIdxFirst,
 			CrossReference lastCellValueIdxLast) {
-
-		int firstRow = locationCellNameIdxFirst.getRow();
-		int lastRow = lastCellValueIdxLast.getRow();
 		
 		int firstColumn = locationCellNameIdxFirst.getColumn();
 		int lastColumn = lastCellValueIdxLast.getColumn();
 		
+		boolean isEdgeRow = row == locationCellNameIdxFirst.getRow() || row == lastCellValueIdxLast.getRow();
+
 		for(int i = firstColumn-1; i <= lastColumn; i++){
 			
-			applyStylesToCells(workbook, sheet, firstRow, i, new IPredicate() {
-				
-				@Override
-				public void execute(Cell cell) {
-					cell.setCellStyle(CellStyles.setMediumTopBorder(cell.getCellStyle()));
-				}
-			});
-			
-			applyStylesToCells(workbook, sheet, lastRow, i, new IPredicate() {
-				
-				@Override
-				public void execute(Cell cell) {
-					cell.setCellStyle(CellStyles.setMediumBottomBorder(cell.getCellStyle()));
-				}
-			});
+			if((isEdgeRow || i == firstColumn || i == lastColumn) && !grid.hasCell(row, i))
+				grid.setCell(row, i, setTableBorders(CellStyleDescriptor.DEFAULT, row, i, locationCellNameIdxFirst, lastCellValueIdxLast));
 		}
-		
-		for(int i = firstRow; i <= lastRow; i++){
-			applyStylesToCells(workbook, sheet, i, firstColumn, new IPredicate() {
+	}
 				
-				@Override
-				public void execute(Cell cell) {
-					cell.setCellStyle(CellStyles.setMediumLeftBorder(cell.getCellStyle()));
-				}
-			});
-			
-			applyStylesToCells(workbook, sheet, i, lastColumn, new IPredicate() {
+	/**
+	 * Adds to the style the medium borders of the table's outline that apply to the given cell
+	 *
+	 * @param style The cell style attributes
+	 * @param row The row of the cell
+	 * @param column The column of the cell
+	 * @param locationCellNameIdxFirst The upper left corner of the table
+	 * @param lastCellValueIdxLast The lower right corner of the table
+	 * @return The style attributes with the table borders
+	 */
+	private CellStyleDescriptor setTableBorders(CellStyleDescriptor style, int row, int column, CrossReference locationCellNameIdxFirst,
+			CrossReference lastCellValueIdxLast) {
 				
-				@Override
-				public void execute(Cell cell) {
-					cell.setCellStyle(CellStyles.setMediumRightBorder(cell.getCellStyle()));
-				}
-			});
-		}
-		
-	}
+		if(column >= locationCellNameIdxFirst.getColumn()-1 && column <= lastCellValueIdxLast.getColumn()){
+			if(row == locationCellNameIdxFirst.getRow())
+				style = style.withMediumTopBorder();
 
-	private void applyStylesToCells(Workbook workbook, Sheet sheet, int row, int column,
-			IPredicate predicate) {
-		
-		Cell toPaint = sheet.getRow(row).getCell(column);
-		
-		if(toPaint == null){
-			toPaint = sheet.getRow(row).createCell(column);
-			toPaint.setCellStyle(CellStyles.getDefaultCellStyle(workbook));
+			if(row == lastCellValueIdxLast.getRow())
+				style = style.withMediumBottomBorder();
 		}
 		
-		predicate.execute(toPaint);
+		if(column == locationCellNameIdxFirst.getColumn())
+			style = style.withMediumLeftBorder();
+				
+		if(column == lastCellValueIdxLast.getColumn())
+			style = style.withMediumRightBorder();
+			
+		return style;
 	}
 
-	private BenchmarkingReportInfo processInformation(BenchmarkingReportConfiguration config, Iterable<Product> results, HashMap<String, CrossReference> brokers) {
-		BenchmarkingReportInfo info = new BenchmarkingReportInfo();
+	private BenchmarkingReportInfo processInformation(BenchmarkingReportConfiguration config, Iterable<Product> results, HashMap<Integer, CrossReference> brokers) {
+		BenchmarkingReportInfo info = new BenchmarkingReportInfo(ProductBatch.of(results));
 		int column = config.getGridValuesFirstCell().getColumn();
 		
-		for (Product product : results) {
-			BenchmarkingLocation location;
-			
-			if(product.getSupplierType() == SupplierType.LOW_COST){
-				location = info.checkLowCostLocation(product.getLocation());
-				
-				if(location == null){
-					location = info.new BenchmarkingLocation(product.getLocation());
-					info.addLowCost(product.getLocation(), location);
-				}
-			}
-			else{
-				location = info.checkRegularLocation(product.getLocation());
-				
-				if(location == null){
-					location = info.new BenchmarkingLocation(product.getLocation());
-					info.addRegular(product.getLocation(), location);
-				}
-			}
-			
-			saveProduct(info, location, product);
+		for (ProductBatch.Cursor product = info.getBatch().cursor(); product.next(); ) {
+			info.addProduct(product);
 		
-			if(brokers.get(product.getBroker()) == null){
-				brokers.put(product.getBroker(), new CrossReference(6, column));
+			if(brokers.get(product.getBrokerId()) == null){
+				brokers.put(product.getBrokerId(), new CrossReference(6, column));
 				column += 2;
 			}
 			
@@ -281,170 +474,158 @@ public class BenchmarkingReportGenerator implements IReportGenerator {
 		
 		return info;
 	}
-
-	private void saveProduct(BenchmarkingReportInfo info, BenchmarkingLocation location, Product product) {
-		BenchmarkingGroup group = location.checkGroup(product.getGroup());
-		if(group == null){
-			group = info.new BenchmarkingGroup(product.getGroup());
-			location.addGroup(product.getGroup(), group);
-		}
-		
-		BenchmarkingDay day = group.checkDay(product.getNumberOfDays());
-		if(day == null){
-			day = info.new BenchmarkingDay(product.getNumberOfDays());
-			group.addDay(product.getNumberOfDays(), day);
+	
+	/**
+	 * Writes the static part of the report: the title and the merged regions of the fixed values
+	 * 
+	 * @param grid The grid where the report is written
+	 * @param config The object that holds the information read from XML file
+	 */
+	private void setSkeleton(ReportGrid grid, BenchmarkingReportConfiguration config) {
+		setTitle(grid, config);
+		
+		CrossReference[] fixedValues = {config.getConsultationDateCell(), config.getHourCell(), config.getPickUpDateCell()};
+		
+		for(CrossReference fixedValue : fixedValues){
+			grid.addMergedRegion(new CellRangeAddress(
+					fixedValue.getRow(), //first row (0-based)
+					fixedValue.getRow(), //last row  (0-based)
+					fixedValue.getColumn(), //first column (0-based)
+					fixedValue.getColumn()+3  //last column  (0-based)
+		    ));
 		}
 		
-		day.addProduct(product);
+		grid.addMergedRegion(new CellRangeAddress(
+				config.getRateCell().getRow(), //first row (0-based)
+				config.getRateCell().getRow(), //last row  (0-based)
+				config.getRateCell().getColumn(), //first column (0-based)
+				config.getRateCell().getColumn() + 1  //last column  (0-based)
+	    ));
 	}
 	
-	private void setFixedValues(Workbook workbook, Sheet sheet, BenchmarkingReportConfiguration config, Calendar reportDate) throws CurrencyConversionException {
-		setTitle(workbook, sheet, config);
-		setConsultationDate(workbook, sheet, config, reportDate);
-		setHour(workbook, sheet, config, reportDate);
-		setPickUpDate(workbook, sheet, config, reportDate);
-		setRate(workbook, sheet, config);
+	/**
+	 * Writes the fixed values: the consultation date, the hour, the pick up date and the rate.
+	 * They are written in the order of their rows, as a streamed sheet can't go back to a
+	 * row that already left the row access window.
+	 * 
+	 * @param grid The grid where the report is written
+	 * @param config The object that holds the information read from XML file
+	 * @param reportDate The report date
+	 * @throws CurrencyConversionException
+	 */
+	private void setFixedValues(ReportGrid grid, BenchmarkingReportConfiguration config, Calendar reportDate) throws CurrencyConversionException {
+		final CrossReference[] cells = {config.getConsultationDateCell(), config.getHourCell(), config.getPickUpDateCell(), config.getRateCell()};
+		Integer[] order = {CONSULTATION_DATE, HOUR, PICK_UP_DATE, RATE};
+		
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return cells[a].getRow() - cells[b].getRow();
+			}
+		});
+		
+		for(int fixedValue : order){
+			switch(fixedValue){
+			case CONSULTATION_DATE:
+				setConsultationDate(grid, config, reportDate);
+				break;
+			case HOUR:
+				setHour(grid, config, reportDate);
+				break;
+			case PICK_UP_DATE:
+				setPickUpDate(grid, config, reportDate);
+				break;
+			default:
+				setRate(grid, config, reportDate);
+			}
+		}
 	}
 	
-	private void setTitle(Workbook workbook, Sheet sheet, BenchmarkingReportConfiguration config) {
-		Row title = sheet.getRow(config.getTitleCell().getRow());
-		
-		if(title == null)
-			title = sheet.createRow(config.getTitleCell().getRow());
+	private void setTitle(ReportGrid grid, BenchmarkingReportConfiguration config) {
+		grid.setCell(config.getTitleCell().getRow(), config.getTitleCell().getColumn(), TITLE,
+				CellStyleDescriptor.DEFAULT.withBoldAndColor(HSSFColor.RED.index, CellStyles.TEXT_SIZE_MEDIUM).withAlignment(CellStyles.ALIGN_LEFT));
 		
-		
-		sheet.addMergedRegion(new CellRangeAddress(
-				title.getRowNum(), //first row (0-based)
-				title.getRowNum(), //last row  (0-based)
+		grid.addMergedRegion(new CellRangeAddress(
+				config.getTitleCell().getRow(), //first row (0-based)
+				config.getTitleCell().getRow(), //last row  (0-based)
 	            config.getTitleCell().getColumn(), //first column (0-based)
 	            config.getTitleCell().getColumn()+3  //last column  (0-based)
 	    ));	
-		
-		Cell cell = title.createCell(config.getTitleCell().getColumn());
-		cell.setCellValue(TITLE);
-		cell.setCellStyle(CellStyles.setAligment(CellStyles.setBoldAndColor(CellStyles.getDefaultCellStyle(workbook), HSSFColor.RED.index, CellStyles.TEXT_SIZE_MEDIUM, workbook), CellStyles.ALIGN_LEFT));		
-		
 	}
 
-	private void setConsultationDate(Workbook workbook, Sheet sheet, BenchmarkingReportConfiguration config, Calendar reportDate) {
-		Row consultationDate = sheet.getRow(config.getConsultationDateCell().getRow());
-		
-		if(consultationDate == null)
-			consultationDate = sheet.createRow(config.getConsultationDateCell().getRow());
-		
-		
-		sheet.addMergedRegion(new CellRangeAddress(
-				consultationDate.getRowNum(), //first row (0-based)
-				consultationDate.getRowNum(), //last row  (0-based)
-	            config.getConsultationDateCell().getColumn(), //first column (0-based)
-	            config.getConsultationDateCell().getColumn()+3  //last column  (0-based)
-	    ));	
-		
+	private void setConsultationDate(ReportGrid grid, BenchmarkingReportConfiguration config, Calendar reportDate) {
 		DateFormat dateFormat = new SimpleDateFormat("dd-MM-yy");
 		
-		Cell cell = consultationDate.createCell(config.getConsultationDateCell().getColumn());
-		cell.setCellValue(String.format("DATA DE CONSULTA: %s", dateFormat.format(reportDate.getTime())));
-		cell.setCellStyle(CellStyles.setAligment(CellStyles.setBold(CellStyles.getDefaultCellStyle(workbook), CellStyles.TEXT_SIZE_MEDIUM, workbook), CellStyles.ALIGN_LEFT));		
-		
+		grid.setCell(config.getConsultationDateCell().getRow(), config.getConsultationDateCell().getColumn(),
+				String.format("DATA DE CONSULTA: %s", dateFormat.format(reportDate.getTime())),
+				CellStyleDescriptor.DEFAULT.withBold(CellStyles.TEXT_SIZE_MEDIUM).withAlignment(CellStyles.ALIGN_LEFT));
 	}
 
-	private void setHour(Workbook workbook, Sheet sheet, BenchmarkingReportConfiguration config, Calendar reportDate) {
-		Row hour = sheet.getRow(config.getHourCell().getRow());
-		
-		if(hour == null)
-			hour = sheet.createRow(config.getHourCell().getRow());
-		
-		
-		sheet.addMergedRegion(new CellRangeAddress(
-				hour.getRowNum(), //first row (0-based)
-				hour.getRowNum(), //last row  (0-based)
-	            config.getHourCell().getColumn(), //first column (0-based)
-	            config.getHourCell().getColumn()+3  //last column  (0-based)
-	    ));	
-		
+	private void setHour(ReportGrid grid, BenchmarkingReportConfiguration config, Calendar reportDate) {
 		DateFormat dateFormat = new SimpleDateFormat("HH:mm");
 		
-		Cell cell = hour.createCell(config.getHourCell().getColumn());
-		cell.setCellValue(String.format("HORA: %s", dateFormat.format(reportDate.getTime())));
-		cell.setCellStyle(CellStyles.setAligment(CellStyles.setBold(CellStyles.getDefaultCellStyle(workbook), CellStyles.TEXT_SIZE_MEDIUM, workbook), CellStyles.ALIGN_LEFT));		
-		
+		grid.setCell(config.getHourCell().getRow(), config.getHourCell().getColumn(),
+				String.format("HORA: %s", dateFormat.format(reportDate.getTime())),
+				CellStyleDescriptor.DEFAULT.withBold(CellStyles.TEXT_SIZE_MEDIUM).withAlignment(CellStyles.ALIGN_LEFT));
 	}
 
-	private void setPickUpDate(Workbook workbook, Sheet sheet, BenchmarkingReportConfiguration config, Calendar reportDate) {
-		Row pickUpDate = sheet.getRow(config.getPickUpDateCell().getRow());
-		
-		if(pickUpDate == null)
-			pickUpDate = sheet.createRow(config.getPickUpDateCell().getRow());
-		
-		
-		sheet.addMergedRegion(new CellRangeAddress(
-				pickUpDate.getRowNum(), //first row (0-based)
-				pickUpDate.getRowNum(), //last row  (0-based)
-	            config.getPickUpDateCell().getColumn(), //first column (0-based)
-	            config.getPickUpDateCell().getColumn()+3  //last column  (0-based)
-	    ));	
-		
+	private void setPickUpDate(ReportGrid grid, BenchmarkingReportConfiguration config, Calendar reportDate) {
 		DateFormat dateFormat = new SimpleDateFormat("dd-MM-yy");
 		
-		Cell cell = pickUpDate.createCell(config.getPickUpDateCell().getColumn());
-		cell.setCellValue(String.format("DATA DE PICK UP: %s", dateFormat.format(reportDate.getTime())));
-		cell.setCellStyle(CellStyles.setBackground(CellStyles.setAligment(CellStyles.setBold(CellStyles.getDefaultCellStyle(workbook), CellStyles.TEXT_SIZE_MEDIUM, workbook), CellStyles.ALIGN_LEFT), HSSFColor.YELLOW.index));		
-		
+		grid.setCell(config.getPickUpDateCell().getRow(), config.getPickUpDateCell().getColumn(),
+				String.format("DATA DE PICK UP: %s", dateFormat.format(reportDate.getTime())),
+				CellStyleDescriptor.DEFAULT.withBold(CellStyles.TEXT_SIZE_MEDIUM).withAlignment(CellStyles.ALIGN_LEFT).withBackground(HSSFColor.YELLOW.index));
 	}
 
 	/**
-	 * Set the current conversion rate
+	 * Set the conversion rate of the report date
 	 * 
-	 * @param workbook The workbook for the Excel File
-	 * @param sheet The sheet that is used
+	 * @param grid The grid where the report is written
 	 * @param config The RateShopReportConfiguration instance
+	 * @param reportDate The report date
 	 * @throws CurrencyConversionException
 	 */
-	private void setRate(Workbook workbook, Sheet sheet, BenchmarkingReportConfiguration config) throws CurrencyConversionException {
+	private void setRate(ReportGrid grid, BenchmarkingReportConfiguration config, Calendar reportDate) throws CurrencyConversionException {
 		
-		double exchangeRate = ExchangeRateService.getExchangeRate("EUR", "GBP", 4);
+		double exchangeRate = ExchangeRateService.getExchangeRate(_exchangeRateProvider, "EUR", "GBP", reportDate, 4);
 		
 		if(exchangeRate == 0)
 			throw new IllegalArgumentException();
 		
-		Row rate = sheet.getRow(config.getRateCell().getRow());
-		
-		if(rate == null)
-			rate = sheet.createRow(config.getRateCell().getRow());
-		
-		
-		sheet.addMergedRegion(new CellRangeAddress(
-				rate.getRowNum(), //first row (0-based)
-				rate.getRowNum(), //last row  (0-based)
-				config.getRateCell().getColumn(), //first column (0-based)
-				config.getRateCell().getColumn() + 1  //last column  (0-based)
-	    ));
-		
-		Cell excRate = rate.createCell(config.getRateCell().getColumn());
-		excRate.setCellValue(exchangeRate);
-		excRate.setCellType(Cell.CELL_TYPE_NUMERIC);
-		excRate.setCellStyle(CellStyles.setBackground(CellStyles.setBold(CellStyles.setDataFormat(workbook, CellStyles.getDefaultCellStyle(workbook), CellStyles.DECIMAL_POINT_FOUR), CellStyles.TEXT_SIZE_SMALL, workbook), IndexedColors.LIME.index));	
+		grid.setCell(config.getRateCell().getRow(), config.getRateCell().getColumn(), exchangeRate,
+				CellStyleDescriptor.DEFAULT.withDataFormat(CellStyles.DECIMAL_POINT_FOUR).withBold(CellStyles.TEXT_SIZE_SMALL).withBackground(IndexedColors.LIME.index));
 	}
 	
 	/**
 	 * Saves a XLSX Report with a specific name
 	 * 
-	 * @param destination The destination
-	 * @param puDate The initial date
-	 * @param doDate The end date
-	 * @throws IOException When can't create the file
+	 * @param workbook The representation of the file
+	 * @param sink The destination of the report
+	 * @param reportName The name of the report
+	 * @throws IOException When can't write the report
 	 */
-	private void saveFile(Workbook workbook, Calendar reportDate, Country country) throws IOException{
-		FileOutputStream out;
+	private void saveFile(Workbook workbook, IReportSink sink, String reportName) throws IOException{
+		OutputStream out = sink.open(reportName);
+	
+		try {
+			// The report has no formulas, so there is nothing to evaluate before writing it
+			workbook.write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Gets the name of the report file
+	 * 
+	 * @param reportDate The report date
+	 * @return the file name
+	 */
+	private String getFileName(Calendar reportDate) {
 		DateFormat dateFormat = new SimpleDateFormat("dd-MM-yy HH_mm");
 		
-		// TODO: Specify output file location 
 		// Do we net to put the country in the name?
-		out = new FileOutputStream(String.format("R %s Benchmarking_UK_PT.xlsx", dateFormat.format(reportDate.getTime())));
-	
-		XSSFFormulaEvaluator.evaluateAllFormulaCells((XSSFWorkbook)workbook);
-		workbook.write(out);
-		out.close();
+		return String.format("R %s Benchmarking_UK_PT.xlsx", dateFormat.format(reportDate.getTime()));
 	}
 
 	
@@ -0,0 +1,341 @@
+package challenge_it.racbit.model.reports.generators;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.stream.JsonWriter;
+
+import challenge_it.racbit.model.core.Country;
+import challenge_it.racbit.model.core.IExchangeRateProvider;
+import challenge_it.racbit.model.core.IReportGenerator;
+import challenge_it.racbit.model.core.IReportSink;
+import challenge_it.racbit.model.core.Product;
+import challenge_it.racbit.model.core.ProductBatch;
+import challenge_it.racbit.model.core.exceptions.CurrencyConversionException;
+import challenge_it.racbit.model.core.exceptions.ReportGenerationException;
+import challenge_it.racbit.model.reports.exchangeRate.ConversionMatrix;
+import challenge_it.racbit.model.reports.exchangeRate.ExchangeRateService;
+import challenge_it.racbit.model.reports.generators.utils.BenchmarkingReportInfo;
+import challenge_it.racbit.model.reports.generators.utils.BenchmarkingReportInfo.BenchmarkingDay;
+import challenge_it.racbit.model.reports.generators.utils.BenchmarkingReportInfo.BenchmarkingGroup;
+import challenge_it.racbit.model.reports.generators.utils.BenchmarkingReportInfo.BenchmarkingLocation;
+import challenge_it.racbit.model.reports.sinks.DirectoryReportSink;
+
+/**
+ * Class that exports the report data, without any workbook, as CSV or as JSON lines.
+ *
+ * The products are aggregated as in the Benchmarking report (by location, group and number
+ * of days, the regular locations first and then the low cost ones) and each one is written
+ * as a record with the location, group, days, broker, supplier, price and converted price
+ * (in euros) columns. The records are streamed to the report as they are visited.
+ */
+public class DataExportReportGenerator implements IReportGenerator {
+
+	/**
+	 * The formats of the exported data
+	 */
+	public enum Format {
+
+		/**
+		 * Comma separated values, with a header line
+		 */
+		CSV("csv"),
+
+		/**
+		 * One JSON object per line
+		 */
+		JSON_LINES("jsonl");
+
+		/**
+		 * The extension of the report files
+		 */
+		private final String _extension;
+
+		private Format(String extension) {
+			_extension = extension;
+		}
+
+		/**
+		 * Gets the extension of the report files
+		 *
+		 * @return the file extension
+		 */
+		public String getExtension() {
+			return _extension;
+		}
+	}
+
+	/**
+	 * The names of the columns
+	 */
+	private static final String[] COLUMNS = {"location", "group", "days", "broker", "supplier", "price", "convertedPrice"};
+
+	/**
+	 * The format of the exported data
+	 */
+	private final Format _format;
+
+	/**
+	 * The source of the exchange rate
+	 */
+	private final IExchangeRateProvider _exchangeRateProvider;
+
+	/**
+	 * Creates a generator of the given format
+	 *
+	 * @param format The format of the exported data
+	 */
+	public DataExportReportGenerator(Format format) {
+		this(format, ExchangeRateService.asProvider());
+	}
+
+	/**
+	 * Creates a generator of the given format
+	 *
+	 * @param format The format of the exported data
+	 * @param exchangeRateProvider The source of the exchange rate
+	 */
+	public DataExportReportGenerator(Format format, IExchangeRateProvider exchangeRateProvider) {
+		_format = format;
+		_exchangeRateProvider = exchangeRateProvider;
+	}
+
+	/**
+	 * Exports the report data in the working directory
+	 *
+	 * @param reportDate The report date
+	 * @param country The country of the products
+	 * @param results The products to be included in the report
+	 * @throws ReportGenerationException, CurrencyConversionException
+	 */
+	@Override
+	public void generate(Calendar reportDate, Country country, Iterable<Product> results) throws ReportGenerationException, CurrencyConversionException {
+		generate(reportDate, country, results, new DirectoryReportSink(new File(".")));
+	}
+
+	/**
+	 * Exports the report data
+	 *
+	 * @param reportDate The report date
+	 * @param country The country of the products
+	 * @param results The products to be included in the report
+	 * @param sink The destination of the report
+	 * @throws ReportGenerationException, CurrencyConversionException
+	 */
+	@Override
+	public void generate(Calendar reportDate, Country country, Iterable<Product> results, IReportSink sink) throws ReportGenerationException, CurrencyConversionException {
+
+		BenchmarkingReportInfo info = new BenchmarkingReportInfo(ProductBatch.of(results));
+
+		for (ProductBatch.Cursor product = info.getBatch().cursor(); product.next(); )
+			info.addProduct(product);
+
+		double[] convertedPrices = getConvertedPrices(info, ConversionMatrix.load(_exchangeRateProvider, reportDate, 4, "GBP", "EUR"));
+
+		try {
+			Writer out = new BufferedWriter(new OutputStreamWriter(sink.open(getFileName(reportDate)), "UTF-8"), IReportSink.BUFFER_SIZE);
+
+			try {
+				if(_format == Format.CSV)
+					writeCsv(out, info, convertedPrices);
+				else
+					writeJsonLines(out, info, convertedPrices);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new ReportGenerationException(e);
+		}
+	}
+
+	/**
+	 * Writes the records as comma separated values, after a header line
+	 *
+	 * @param out The destination of the records
+	 * @param info The aggregated products
+	 * @param convertedPrices The prices in euros, in the order of the records
+	 * @throws IOException When the records can't be written
+	 */
+	private void writeCsv(Writer out, BenchmarkingReportInfo info, double[] convertedPrices) throws IOException {
+		for (int i = 0; i < COLUMNS.length; i++) {
+			if(i > 0)
+				out.write(',');
+			out.write(COLUMNS[i]);
+		}
+		out.write('\n');
+
+		List<Map<String, BenchmarkingLocation>> sections = getSections(info);
+		int index = 0;
+		ProductBatch.Cursor product = info.getBatch().cursor();
+
+		for (Map<String, BenchmarkingLocation> locations : sections) {
+			for (BenchmarkingLocation location : locations.values()) {
+				for (BenchmarkingGroup group : location.getGroups().values()) {
+					for (BenchmarkingDay day : group.getDays().values()) {
+						for (int i = 0; i < day.size(); i++) {
+							product.moveTo(day.getRow(i));
+							writeCsvField(out, location.getLocationName());
+							out.write(',');
+							writeCsvField(out, group.getGroupName());
+							out.write(',');
+							out.write(String.valueOf(day.getNumberOfDays()));
+							out.write(',');
+							writeCsvField(out, product.getBroker());
+							out.write(',');
+							writeCsvField(out, product.getSupplier());
+							out.write(',');
+							out.write(String.valueOf(product.getPrice()));
+							out.write(',');
+							out.write(String.valueOf(convertedPrices[index++]));
+							out.write('\n');
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a CSV field, quoting it when it has separators, quotes or line breaks
+	 *
+	 * @param out The destination of the field
+	 * @param value The field value
+	 * @throws IOException When the field can't be written
+	 */
+	private void writeCsvField(Writer out, String value) throws IOException {
+		if(value == null)
+			return;
+
+		boolean quoted = false;
+
+		for (int i = 0; i < value.length() && !quoted; i++) {
+			char c = value.charAt(i);
+			quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+
+		if(!quoted){
+			out.write(value);
+			return;
+		}
+
+		out.write('"');
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if(c == '"')
+				out.write('"');
+			out.write(c);
+		}
+
+		out.write('"');
+	}
+
+	/**
+	 * Writes the records as JSON objects, one per line
+	 *
+	 * @param out The destination of the records
+	 * @param info The aggregated products
+	 * @param convertedPrices The prices in euros, in the order of the records
+	 * @throws IOException When the records can't be written
+	 */
+	private void writeJsonLines(Writer out, BenchmarkingReportInfo info, double[] convertedPrices) throws IOException {
+		JsonWriter json = new JsonWriter(out);
+
+		// Allows one top-level object per line
+		json.setLenient(true);
+
+		List<Map<String, BenchmarkingLocation>> sections = getSections(info);
+		int index = 0;
+		ProductBatch.Cursor product = info.getBatch().cursor();
+
+		for (Map<String, BenchmarkingLocation> locations : sections) {
+			for (BenchmarkingLocation location : locations.values()) {
+				for (BenchmarkingGroup group : location.getGroups().values()) {
+					for (BenchmarkingDay day : group.getDays().values()) {
+						for (int i = 0; i < day.size(); i++) {
+							product.moveTo(day.getRow(i));
+							json.beginObject();
+							json.name(COLUMNS[0]).value(location.getLocationName());
+							json.name(COLUMNS[1]).value(group.getGroupName());
+							json.name(COLUMNS[2]).value(day.getNumberOfDays());
+							json.name(COLUMNS[3]).value(product.getBroker());
+							json.name(COLUMNS[4]).value(product.getSupplier());
+							json.name(COLUMNS[5]).value(product.getPrice());
+							json.name(COLUMNS[6]).value(convertedPrices[index++]);
+							json.endObject();
+
+							out.write('\n');
+						}
+					}
+				}
+			}
+		}
+
+		json.flush();
+	}
+
+	/**
+	 * Converts the prices of all the records in a single pass
+	 *
+	 * @param info The aggregated products
+	 * @param conversion The rates of the converted prices
+	 * @return the converted prices, in the order of the records
+	 */
+	private double[] getConvertedPrices(BenchmarkingReportInfo info, ConversionMatrix conversion) {
+		double[] prices = new double[16];
+		int count = 0;
+		ProductBatch.Cursor product = info.getBatch().cursor();
+
+		for (Map<String, BenchmarkingLocation> locations : getSections(info)) {
+			for (BenchmarkingLocation location : locations.values()) {
+				for (BenchmarkingGroup group : location.getGroups().values()) {
+					for (BenchmarkingDay day : group.getDays().values()) {
+						for (int i = 0; i < day.size(); i++) {
+							product.moveTo(day.getRow(i));
+							if(count == prices.length)
+								prices = Arrays.copyOf(prices, count * 2);
+							prices[count++] = product.getPrice();
+						}
+					}
+				}
+			}
+		}
+
+		double[][] converted = new double[conversion.getTargetCount()][count];
+		conversion.convert(prices, 0, count, converted);
+
+		return converted[0];
+	}
+
+	/**
+	 * Gets the locations in the order they are exported: the regular ones and then the low cost ones
+	 *
+	 * @param info The aggregated products
+	 * @return the locations of each section
+	 */
+	private List<Map<String, BenchmarkingLocation>> getSections(BenchmarkingReportInfo info) {
+		return Arrays.asList(info.getRegulars(), info.getLowCosts());
+	}
+
+	/**
+	 * Gets the name of the report file
+	 *
+	 * @param reportDate The report date
+	 * @return the file name
+	 */
+	private String getFileName(Calendar reportDate) {
+		DateFormat dateFormat = new SimpleDateFormat("dd-MM-yy HH_mm");
+
+		return String.format("R %s Benchmarking_UK_PT.%s", dateFormat.format(reportDate.getTime()), _format.getExtension());
+	}
+}
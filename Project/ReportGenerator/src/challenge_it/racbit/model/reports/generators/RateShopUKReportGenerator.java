@@ -1,18 +1,19 @@
 package challenge_it.racbit.model.reports.generators;
 
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
 import org.apache.poi.hssf.util.HSSFColor;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.ss.usermodel.CellValue;
-import org.apache.poi.ss.usermodel.ComparisonOperator;
 import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
@@ -25,22 +26,33 @@ import org.apache.poi.xssf.usermodel.XSSFFormulaEvaluator;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import challenge_it.racbit.model.core.Country;
+import challenge_it.racbit.model.core.IExchangeRateProvider;
 import challenge_it.racbit.model.core.IReportGenerator;
+import challenge_it.racbit.model.core.IReportSink;
 import challenge_it.racbit.model.core.Product;
+import challenge_it.racbit.model.core.Product.Group;
 import challenge_it.racbit.model.core.Product.InsurancePackage;
+import challenge_it.racbit.model.core.ProductBatch;
+import challenge_it.racbit.model.core.base.NameDictionary;
 import challenge_it.racbit.model.core.exceptions.CurrencyConversionException;
 import challenge_it.racbit.model.core.exceptions.ReportGenerationException;
+import challenge_it.racbit.model.reports.configurations.ConfigurationRegistry;
 import challenge_it.racbit.model.reports.configurations.RateShopReportConfiguration;
 import challenge_it.racbit.model.reports.configurations.RateShopReportConfigurationReader;
+import challenge_it.racbit.model.reports.exchangeRate.ConversionMatrix;
 import challenge_it.racbit.model.reports.exchangeRate.ExchangeRateService;
+import challenge_it.racbit.model.reports.generators.utils.CellStyleDescriptor;
 import challenge_it.racbit.model.reports.generators.utils.CellStyles;
 import challenge_it.racbit.model.reports.generators.utils.CrossReference;
 import challenge_it.racbit.model.reports.generators.utils.RateShopReportBroker;
+import challenge_it.racbit.model.reports.generators.utils.RateShopReportBrokerInfo;
+import challenge_it.racbit.model.reports.generators.utils.ReportSkeleton;
+import challenge_it.racbit.model.reports.sinks.DirectoryReportSink;
 
 /**
  * Class that generates a RateShopUK Report
  * 
- *  @author Ctia Moreira e Joo Taborda
+ *  @author Cátia Moreira e João Taborda
  *
  */
 public class RateShopUKReportGenerator implements IReportGenerator {
@@ -57,7 +69,7 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 	 * 2. When merging cell with style, is necessary to apply the style
 	 * to all that are going to be merged
 	 * 
-	 *  @author Ctia Moreira e Joo Taborda
+	 *  @author Cátia Moreira e João Taborda
 	 *
 	 *
 	 */
@@ -127,62 +139,143 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 	 */
 	private static final String XML_TRANSFORMATION = "configuration/ReportTransformation.xsl";
 	
+	/**
+	 * States that all the workbook formulas are evaluated before the report is saved.
+	 * Otherwise the formulas are saved with the results computed while they are written
+	 * and Excel recalculates them when the file is opened.
+	 */
+	private final boolean _evaluateFormulas;
+	
+	/**
+	 * The source of the exchange rate
+	 */
+	private final IExchangeRateProvider _exchangeRateProvider;
+	
+	/**
+	 * Creates a generator that saves the formulas with their computed results,
+	 * without evaluating the workbook
+	 */
+	public RateShopUKReportGenerator(){
+		this(false);
+	}
+	
+	/**
+	 * Creates a generator
+	 * 
+	 * @param evaluateFormulas States that all the workbook formulas are evaluated before the report is saved
+	 */
+	public RateShopUKReportGenerator(boolean evaluateFormulas){
+		this(evaluateFormulas, ExchangeRateService.asProvider());
+	}
+	
+	/**
+	 * Creates a generator
+	 * 
+	 * @param evaluateFormulas States that all the workbook formulas are evaluated before the report is saved
+	 * @param exchangeRateProvider The source of the exchange rate
+	 */
+	public RateShopUKReportGenerator(boolean evaluateFormulas, IExchangeRateProvider exchangeRateProvider){
+		_evaluateFormulas = evaluateFormulas;
+		_exchangeRateProvider = exchangeRateProvider;
+	}
+	
+	/**
+	 * Generates the UK report in the working directory
+	 * 
+	 * @param reportDate The report date
+	 * @param country The country of the products
+	 * @param results The products to be included in the report
+	 * @throws ReportGenerationException, CurrencyConversionException
+	 */
+	@Override
+	public void generate(Calendar reportDate, Country country, Iterable<Product> results) throws ReportGenerationException, CurrencyConversionException {
+		generate(reportDate, country, results, new DirectoryReportSink(new File(".")));
+	}
+	
 	/**
 	 * Generates the UK report
 	 * 
 	 * The execution order is as follows:
-	 * 1. Read XML configuration file and apply the schema and the transformation using RateShopReportConfiguration class
+	 * 1. Get the configuration from the ConfigurationRegistry, which reads the XML file and applies the schema and the transformation using RateShopReportConfiguration class the first time it is needed
 	 * 2. Set the info used by RateShopUKReportInfo 
+	 * 2.1. Copy the static part of the report (currency symbols, groups' names and merged regions), which is only rendered once per configuration
 	 * 3. Combine the information obtained from XML file with the information from the iterator to fill the table with the values 
 	 * 3.1. The styles for the table cells are applied at the same time
 	 * 3.2. The column used for minimum values is created separately for each broker 
 	 * 3.3. The line that has the suppliers names is also created for each broker
 	 * 3.4. Because the table could have more than one broker, there is a pointer that should be set after the steps above
-	 * 4. Fill the column with the groups names
+	 * 4. Set the fixed values of the report
 	 * 5. Save the file
 	 * 
 	 * @param reportDate The date that should be on the file name
 	 * @param country The country that should be on the file name
 	 * @param results The iterator which have the values used to fill the table
+	 * @param sink The destination of the report
 	 * @throws ReportGenerationException, CurrencyConversionException
 	 */
 	@Override
-	public void generate(Calendar reportDate, Country country, Iterable<Product> results) throws ReportGenerationException, CurrencyConversionException {
+	public void generate(Calendar reportDate, Country country, Iterable<Product> results, IReportSink sink) throws ReportGenerationException, CurrencyConversionException {
 		try {
 			
-			RateShopReportConfiguration config = (RateShopReportConfiguration) new RateShopReportConfigurationReader().read(XML_CONFIGURATION, XML_SCHEMA, XML_TRANSFORMATION);
+			final RateShopReportConfiguration config = (RateShopReportConfiguration) ConfigurationRegistry.getDefault().get(XML_CONFIGURATION, XML_SCHEMA, XML_TRANSFORMATION, new RateShopReportConfigurationReader());
 			
 			Workbook workbook = new XSSFWorkbook();
+			CellStyles styles = new CellStyles(workbook);
 			Sheet sheet = workbook.createSheet();
 			
-			RateShopUKReportInfo reportInfo = completeBrokerInformation(config, results);
+			Map<Integer, RateShopReportBrokerInfo> brokers = new HashMap<Integer, RateShopReportBrokerInfo>();
+			
+			for(RateShopReportBroker broker : config.getBrokers().values())
+				brokers.put(broker.getId(), new RateShopReportBrokerInfo(broker));
+			
+			ProductBatch batch = ProductBatch.of(results);
+			RateShopUKReportInfo reportInfo = completeBrokerInformation(config, brokers, batch);
+			
+			ReportSkeleton skeleton = ReportSkeleton.get(XML_CONFIGURATION, config, new ReportSkeleton.Renderer() {
+				@Override
+				public void render(CellStyles styles, Sheet sheet) {
+					setSkeleton(styles, sheet, config);
+				}
+			});
+			
+			skeleton.stamp(styles, sheet);
+						
+			ConversionMatrix conversion = ConversionMatrix.load(_exchangeRateProvider, reportDate, 4, "GBP", "EUR");
+			double exchangeRate = conversion.getRate(0);
 						
 			int brokerFirstSupplierIndex = config.getGridValuesFirstCell().getColumn();
 				
 			for(String brokerName : config.getBrokersList())
 			{
-				RateShopReportBroker broker = config.getBrokers().get(brokerName);
+				RateShopReportBrokerInfo broker = brokers.get(NameDictionary.getId(brokerName));
+				ProductBatch.Cursor product = batch.cursor();
+				double[] productPrices = new double[broker.getProductCount()];
+				
+				for (int i = 0; i < productPrices.length; i++)
+					productPrices[i] = product.moveTo(broker.getProductRow(i)).getPrice();
 				
-				for (Product product : broker.getProducts()) 
+				double[] euroPrices = conversion.convert(productPrices)[0];
+				
+				for (int i = 0; i < productPrices.length; i++) 
 				{
-					setProductCell(workbook, sheet, config, broker, brokerFirstSupplierIndex, product);
+					setProductCell(styles, sheet, config, broker, brokerFirstSupplierIndex, product.moveTo(broker.getProductRow(i)), euroPrices[i]);
 				}
 				
 				if(broker.hasMinimum()){
-					setMinimumColumn(workbook, sheet, config, broker, brokerFirstSupplierIndex);
-					setMinimumColor(workbook, sheet, config, broker, brokerFirstSupplierIndex);
+					double[] minimums = getMinimums(config, batch.getMinimumPrices(broker.getId()));
+					setMinimumColumn(styles, sheet, config, broker, brokerFirstSupplierIndex, minimums, exchangeRate);
+					setMinimumColor(sheet, config, broker, brokerFirstSupplierIndex);
 				}
 				
-				setTableCellsWithoutValue(workbook, sheet, config, broker, brokerFirstSupplierIndex);
+				setTableCellsWithoutValue(styles, sheet, config, broker, brokerFirstSupplierIndex);
 
-				fillSuppliersHeader(workbook, sheet, config, broker, brokerFirstSupplierIndex);
+				fillSuppliersHeader(styles, sheet, config, broker, brokerFirstSupplierIndex);
 				
 				brokerFirstSupplierIndex += broker.getSuppliersList().size() + (broker.hasMinimum()?1:0);
 			}
 			
-			fillGroups(workbook, sheet, config);
-			setFixedValues(workbook, sheet, config, reportInfo);
-			saveFile(workbook, reportInfo, reportDate, country);
+			setFixedValues(styles, sheet, config, reportInfo, exchangeRate);
+			saveFile(workbook, reportInfo, reportDate, sink);
 		}
 		catch (CurrencyConversionException e){
 			throw e;
@@ -197,35 +290,34 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 	 * This is used to know the concrete number of suppliers each broker
 	 * 
 	 * @param config The object that holds the information read from XML file
-	 * @param results The iterator which have the values used to fill the table
+	 * @param brokers The information of the report about each broker, by broker id, which is completed
+	 * @param batch The products used to fill the table
 	 * @return the information about the destination and the days to fill the report values
 	 */
-	private RateShopUKReportInfo completeBrokerInformation(RateShopReportConfiguration config, Iterable<Product> results) {
+	private RateShopUKReportInfo completeBrokerInformation(RateShopReportConfiguration config, Map<Integer, RateShopReportBrokerInfo> brokers, ProductBatch batch) {
 		RateShopUKReportInfo reportInfo = null;
 		
-		Map<String, RateShopReportBroker> brokers = config.getBrokers();
-		
-		for (Product product : results) {
+		for (ProductBatch.Cursor product = batch.cursor(); product.next(); ) {
 			
 			if(reportInfo == null){
 				Calendar puDate = Calendar.getInstance();
-				puDate.setTime(product.getStartDate());
+				puDate.setTimeInMillis(product.getStartTime());
 				
 				Calendar doDate = Calendar.getInstance();
-				doDate.setTime(product.getStartDate());
+				doDate.setTimeInMillis(product.getStartTime());
 				doDate.add(Calendar.DAY_OF_MONTH, product.getNumberOfDays());
 				
 				reportInfo = new RateShopUKReportInfo(puDate, doDate, product.getLocation());
 			}
 			
-			RateShopReportBroker b = brokers.get(product.getBroker());
+			RateShopReportBrokerInfo b = brokers.get(product.getBrokerId());
 			
 			if(b != null){
 				
-				if(!b.getSuppliersList().contains(product.getSupplier())){
+				if(!b.getSuppliersMap().containsKey(product.getSupplierId())){
 					b.addSupplier(product.getSupplier(), new CrossReference(config.getGridValuesFirstCell().getRow()-1, b.getSuppliersList().size()));
 				}
-				b.addProduct(product);
+				b.addProduct(product.getRow());
 			}
 			
 		}
@@ -236,15 +328,16 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 	/**
 	 * Place the product in the correct cell
 	 * 
-	 * @param workbook The representation of the file
+	 * @param styles The workbook styles
 	 * @param sheet The representation of the sheet
 	 * @param config The object that holds the information read from XML file
 	 * @param broker The broker that has the suppliers
 	 * @param brokerFirstCell The index of the designated broker
-	 * @param product The object that holds the product information
+	 * @param product The cursor, at the row of the product
+	 * @param euroPrice The price of the product in euros, placed in the euro table
 	 */
-	private void setProductCell(Workbook workbook, Sheet sheet, RateShopReportConfiguration config, RateShopReportBroker broker, int brokerFirstCell, Product product) {
-		CrossReference supplierCell = broker.getSuppliersMap().get(product.getSupplier());
+	private void setProductCell(CellStyles styles, Sheet sheet, RateShopReportConfiguration config, RateShopReportBrokerInfo broker, int brokerFirstCell, ProductBatch.Cursor product, double euroPrice) {
+		CrossReference supplierCell = broker.getSuppliersMap().get(product.getSupplierId());
 		CrossReference groupCell =  config.getGroupsMap().get(product.getGroup().toString());
 		
 		if(supplierCell != null && groupCell != null)
@@ -262,45 +355,74 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 			Cell cellWithPoundValue = poundRow.createCell(supplierCell.getColumn() + brokerFirstCell);
 			Cell cellWithEuroValue = euroRow.createCell(supplierCell.getColumn() + brokerFirstCell);
 			
-			CellStyle style = CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook));
+			CellStyleDescriptor style = CellStyleDescriptor.DEFAULT.withThinBorders();
 
 			if(product.getInsurancePackage() == InsurancePackage.NO_EXCESS)
-				style = CellStyles.setBackground(style, HSSFColor.YELLOW.index);
+				style = style.withBackground(HSSFColor.YELLOW.index);
 			else 
 				if(product.getInsurancePackage() == InsurancePackage.FULLY_REFUNDABLE)
-					style = CellStyles.setBackground(style, HSSFColor.LIGHT_YELLOW.index);
+					style = style.withBackground(HSSFColor.LIGHT_YELLOW.index);
 
-			cellWithPoundValue.setCellStyle(style);
+			cellWithPoundValue.setCellStyle(styles.get(style));
 			cellWithPoundValue.setCellValue(product.getPrice());
 			cellWithPoundValue.setCellType(Cell.CELL_TYPE_NUMERIC);
 			
 			
-			cellWithEuroValue.setCellFormula(CellReference.convertNumToColString(supplierCell.getColumn() + brokerFirstCell) + (groupCell.getRow()+1)
-					+ "/" + CellReference.convertNumToColString(config.getRateCell().getColumn()) + (config.getRateCell().getRow()+1));
-			cellWithEuroValue.setCellType(Cell.CELL_TYPE_FORMULA);
-			cellWithEuroValue.setCellStyle(style);
+			cellWithEuroValue.setCellValue(euroPrice);
+			cellWithEuroValue.setCellType(Cell.CELL_TYPE_NUMERIC);
+			cellWithEuroValue.setCellStyle(styles.get(style));
+		}
+	}
+	
+	/**
+	 * Gets the minimum price of each group of the broker table
+	 * 
+	 * @param config The object that holds the information read from XML file
+	 * @param groupMinimums The minimum price of the broker's products, by group ordinal {@see ProductBatch#getMinimumPrices(int)}
+	 * @return the minimum price of each row of the table, or NaN for the groups without prices
+	 */
+	private double[] getMinimums(RateShopReportConfiguration config, double[] groupMinimums) {
+		double[] minimums = new double[config.getGroupsList().size()];
+		Arrays.fill(minimums, Double.NaN);
+		
+		for(Group group : Group.values()){
+			CrossReference groupCell = config.getGroupsMap().get(group.toString());
 			
+			if(groupCell != null){
+				int index = groupCell.getRow() - config.getGridValuesFirstCell().getRow();
+				
+				if(index >= 0 && index < minimums.length)
+					minimums[index] = groupMinimums[group.ordinal()];
+			}
 		}
+		
+		return minimums;
 	}
 	
 	/**
 	 * Used to create a minimum column for brokers that requires it
 	 * 
-	 * @param workbook The representation of the file
+	 * @param styles The workbook styles
 	 * @param sheet The representation of the sheet
 	 * @param config The object that holds the information read from XML file
 	 * @param broker The broker that has the suppliers
 	 * @param brokerFirstCell The index of the designated broker
+	 * @param minimums The minimum price of each group
+	 * @param exchangeRate The conversion rate used in the euro table
 	 */
-	private void setMinimumColumn(Workbook workbook, Sheet sheet, RateShopReportConfiguration config, RateShopReportBroker broker, int brokerFirstCell) {
+	private void setMinimumColumn(CellStyles styles, Sheet sheet, RateShopReportConfiguration config, RateShopReportBrokerInfo broker, int brokerFirstCell, double[] minimums, double exchangeRate) {
 		final int column = brokerFirstCell + broker.getSuppliersList().size();
+		final int firstRow = config.getGridValuesFirstCell().getRow();
 		final String columnLetter = CellReference.convertNumToColString(brokerFirstCell);
 				
 		Cell euroMinimum = null;
 		Cell poundMinimum = null;
 		
 		// Set the Minimum function
-		for (int row = config.getGridValuesFirstCell().getRow(); row < config.getGridValuesFirstCell().getRow() + config.getGroupsList().size(); row++) { 	
+		for (int row = firstRow; row < firstRow + config.getGroupsList().size(); row++) { 	
+			
+			// MIN of a row without values is 0 in Excel
+			double minimum = Double.isNaN(minimums[row - firstRow]) ? 0 : minimums[row - firstRow];
 			
 			Row poundRow = sheet.getRow(row);
 			Row euroRow = sheet.getRow(row + config.getConversionTableOffset());
@@ -312,18 +434,20 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 				euroRow = sheet.createRow(row + config.getConversionTableOffset());
 			
 			poundMinimum = poundRow.createCell(column);		
-			poundMinimum.setCellStyle(CellStyles.setMediumRightBorder(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook))));
+			poundMinimum.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withMediumRightBorder()));
 			poundMinimum.setCellFormula("MIN(" + columnLetter + (row+1) +":INDIRECT(ADDRESS(ROW(),COLUMN()-1,4)))");
 			poundMinimum.setCellType(Cell.CELL_TYPE_FORMULA);
+			poundMinimum.setCellValue(minimum);
 			
 			euroMinimum = euroRow.createCell(column);
-			euroMinimum.setCellStyle(CellStyles.setMediumRightBorder(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook))));
+			euroMinimum.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withMediumRightBorder()));
 			euroMinimum.setCellFormula("MIN(" + columnLetter + (row + config.getConversionTableOffset() +1) +":INDIRECT(ADDRESS(ROW(),COLUMN()-1,4)))");
 			euroMinimum.setCellType(Cell.CELL_TYPE_FORMULA);
+			euroMinimum.setCellValue(minimum / exchangeRate);
 		}
 		
-		poundMinimum.setCellStyle(CellStyles.setMediumBottomBorder(CellStyles.setMediumRightBorder(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook)))));
-		euroMinimum.setCellStyle(CellStyles.setMediumBottomBorder(CellStyles.setMediumRightBorder(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook)))));		
+		poundMinimum.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withMediumRightBorder().withMediumBottomBorder()));
+		euroMinimum.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withMediumRightBorder().withMediumBottomBorder()));		
 		
 		
 		Row poundRow = sheet.getRow(config.getGridValuesFirstCell().getRow()-1);
@@ -337,12 +461,12 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 		
 		// Define the Minimum header with the name in the XML Configuration 
 		Cell poundMininumHeader = poundRow.createCell(column);	
-		poundMininumHeader.setCellStyle(CellStyles.setMediumTopBorder(CellStyles.setMediumBottomBorder(CellStyles.setMediumRightBorder(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook))))));
+		poundMininumHeader.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withMediumRightBorder().withMediumBottomBorder().withMediumTopBorder()));
 		poundMininumHeader.setCellValue(broker.getMinimumColumnName());
 		poundMininumHeader.setCellType(Cell.CELL_TYPE_STRING);
 		
 		Cell euroMininumHeader = euroRow.createCell(column);
-		euroMininumHeader.setCellStyle(CellStyles.setMediumTopBorder(CellStyles.setMediumBottomBorder(CellStyles.setMediumRightBorder(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook))))));
+		euroMininumHeader.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withMediumRightBorder().withMediumBottomBorder().withMediumTopBorder()));
 		euroMininumHeader.setCellValue(broker.getMinimumColumnName());
 		euroMininumHeader.setCellType(Cell.CELL_TYPE_STRING);
 		
@@ -351,59 +475,52 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 	/**
 	 * Set the cell font color to red if is value is the same as the minimum column value
 	 * 
-	 * @param workbook The representation of the file
+	 * A single formula rule is used for both tables of the broker: its references are relative
+	 * to the first cell of the pound table, so each cell is compared with the minimum column of its row.
+	 * 
 	 * @param sheet The representation of the sheet
 	 * @param config The object that holds the information read from XML file
 	 * @param broker The broker that has the suppliers
 	 * @param brokerFirstCell The index of the designated broker
 	 */
-	private void setMinimumColor(Workbook workbook, Sheet sheet, RateShopReportConfiguration config, RateShopReportBroker broker, int brokerFirstCell) {
+	private void setMinimumColor(Sheet sheet, RateShopReportConfiguration config, RateShopReportBrokerInfo broker, int brokerFirstCell) {
 		final int lastColumn = brokerFirstCell + broker.getSuppliersList().size();
 		final int firstRow = config.getGridValuesFirstCell().getRow();
+		final int lastRow = firstRow + config.getGroupsList().size() - 1;
 		
-		for(int i = firstRow; i < firstRow+config.getGroupsList().size(); i++){
+		SheetConditionalFormatting cf = sheet.getSheetConditionalFormatting();
+		
+		String firstCell = CellReference.convertNumToColString(brokerFirstCell) + (firstRow+1);
+		String minimumCell = "$" + CellReference.convertNumToColString(lastColumn) + (firstRow+1);
 			
-			CellValue cellEuroMinimumValue = workbook.getCreationHelper().createFormulaEvaluator().evaluate(sheet.getRow(i).getCell(lastColumn));
-			CellValue cellPoundMinimumValue = workbook.getCreationHelper().createFormulaEvaluator().evaluate(sheet.getRow(i+config.getConversionTableOffset()).getCell(lastColumn));
+		// The cells without a price are not numbers, so they are never highlighted
+		XSSFConditionalFormattingRule rule = (XSSFConditionalFormattingRule) cf.createConditionalFormattingRule(
+			"AND(ISNUMBER(" + firstCell + ")," + firstCell + "=" + minimumCell + ")"
+		);
 			
-			SheetConditionalFormatting cf = sheet.getSheetConditionalFormatting();
-
-			XSSFConditionalFormattingRule euroRule = (XSSFConditionalFormattingRule) cf.createConditionalFormattingRule(
-			     ComparisonOperator.EQUAL, 
-			     cellEuroMinimumValue.getNumberValue() + "",
-			     null
-			);
-			
-			XSSFConditionalFormattingRule poundRule = (XSSFConditionalFormattingRule) cf.createConditionalFormattingRule(
-				     ComparisonOperator.EQUAL, 
-				     cellPoundMinimumValue.getNumberValue() + "",
-				     null
-				);
-
-			 // Create pattern with red background
-			euroRule.createFontFormatting().setFontColorIndex(HSSFColor.RED.index);
-			poundRule.createFontFormatting().setFontColorIndex(HSSFColor.RED.index);
+		// Create pattern with red font
+		rule.createFontFormatting().setFontColorIndex(HSSFColor.RED.index);
 
-			 // Define a region containing first column
-			CellRangeAddress[] euroCRA = {new CellRangeAddress(i, i, brokerFirstCell, lastColumn-1) };
-			CellRangeAddress[] poundCRA = {new CellRangeAddress(i+config.getConversionTableOffset(), i+config.getConversionTableOffset(), brokerFirstCell, lastColumn-1) };
-			
-			// Apply Conditional Formatting rule defined above to the regions  
-			cf.addConditionalFormatting(euroCRA, euroRule);
-			cf.addConditionalFormatting(poundCRA, poundRule);
-		}		
+		// Define the regions of both tables
+		CellRangeAddress[] regions = {
+			new CellRangeAddress(firstRow, lastRow, brokerFirstCell, lastColumn-1),
+			new CellRangeAddress(firstRow+config.getConversionTableOffset(), lastRow+config.getConversionTableOffset(), brokerFirstCell, lastColumn-1)
+		};
+			
+		// Apply Conditional Formatting rule defined above to the regions  
+		cf.addConditionalFormatting(regions, rule);
 	}
 	
 	/**
 	 * Searches the table for cells that doesn't have any value and creates them with a specific style
 	 * 
-	 * @param workbook The representation of the file
+	 * @param styles The workbook styles
 	 * @param sheet The representation of the sheet
 	 * @param config The object that holds the information read from XML file
 	 * @param broker The broker which table will be read
 	 * @param brokerFirstCell The initial column to start read
 	 */
-	private void setTableCellsWithoutValue(Workbook workbook, Sheet sheet, RateShopReportConfiguration config, RateShopReportBroker broker, int brokerFirstCell) {
+	private void setTableCellsWithoutValue(CellStyles styles, Sheet sheet, RateShopReportConfiguration config, RateShopReportBrokerInfo broker, int brokerFirstCell) {
 
 		final int lastRow = config.getGridValuesFirstCell().getRow() + config.getGroupsList().size();
 		
@@ -431,22 +548,22 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 					poundCell = poundRow.createCell(j);
 					euroCell = euroRow.createCell(j);
 					
-					poundCell.setCellStyle(CellStyles.setBackground(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook)),IndexedColors.GREY_40_PERCENT.getIndex()));
-					euroCell.setCellStyle(CellStyles.setBackground(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook)),IndexedColors.GREY_40_PERCENT.getIndex()));
+					poundCell.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withBackground(IndexedColors.GREY_40_PERCENT.getIndex())));
+					euroCell.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withBackground(IndexedColors.GREY_40_PERCENT.getIndex())));
 				}
 				
 				if(i == lastRow-1){
-					poundCell.setCellStyle(CellStyles.setMediumBottomBorder(poundCell.getCellStyle()));
-					euroCell.setCellStyle(CellStyles.setMediumBottomBorder(euroCell.getCellStyle()));
+					poundCell.setCellStyle(styles.get(styles.getDescriptor(poundCell.getCellStyle()).withMediumBottomBorder()));
+					euroCell.setCellStyle(styles.get(styles.getDescriptor(euroCell.getCellStyle()).withMediumBottomBorder()));
 				}
 				
 			}
 			
 			if(!broker.hasMinimum()){				
 				poundCell = poundRow.getCell(brokerFirstCell + broker.getSuppliersList().size() - 1);
-				poundCell.setCellStyle(CellStyles.setMediumRightBorder(poundCell.getCellStyle()));
+				poundCell.setCellStyle(styles.get(styles.getDescriptor(poundCell.getCellStyle()).withMediumRightBorder()));
 				euroCell = euroRow.getCell(brokerFirstCell + broker.getSuppliersList().size() - 1);
-				euroCell.setCellStyle(CellStyles.setMediumRightBorder(euroCell.getCellStyle()));
+				euroCell.setCellStyle(styles.get(styles.getDescriptor(euroCell.getCellStyle()).withMediumRightBorder()));
 			}
 		}
 		
@@ -455,13 +572,13 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 	/**
 	 * Fills the suppliers line with the names
 	 * 
-	 * @param workbook The representation of the file
+	 * @param styles The workbook styles
 	 * @param sheet The representation of the sheet
 	 * @param config The object that holds the information read from XML file
 	 * @param broker The broker that has the suppliers
 	 * @param brokerFirstCell The index of the designated broker
 	 */
-	private void fillSuppliersHeader(Workbook workbook, Sheet sheet, RateShopReportConfiguration config, RateShopReportBroker broker, int brokerFirstCell) {
+	private void fillSuppliersHeader(CellStyles styles, Sheet sheet, RateShopReportConfiguration config, RateShopReportBrokerInfo broker, int brokerFirstCell) {
 
 		Row poundRow = sheet.getRow(config.getGridValuesFirstCell().getRow()-1);
 		Row euroRow = sheet.getRow(config.getGridValuesFirstCell().getRow()-1 + config.getConversionTableOffset());
@@ -476,36 +593,38 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 		Cell euroSuppliers = null;
 
 		for (String  supplier : broker.getSuppliersList()) {
-			poundSuppliers = poundRow.createCell(brokerFirstCell + broker.getSuppliersMap().get(supplier).getColumn());
-			poundSuppliers.setCellStyle(CellStyles.setMediumBottomBorder(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook))));
+			int supplierId = NameDictionary.getId(supplier);
+			
+			poundSuppliers = poundRow.createCell(brokerFirstCell + broker.getSuppliersMap().get(supplierId).getColumn());
+			poundSuppliers.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withMediumBottomBorder()));
 			poundSuppliers.setCellValue(supplier);
 			poundSuppliers.setCellType(Cell.CELL_TYPE_STRING);
 			
-			euroSuppliers = euroRow.createCell(brokerFirstCell + broker.getSuppliersMap().get(supplier).getColumn());
-			euroSuppliers.setCellStyle(CellStyles.setMediumBottomBorder(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook))));
+			euroSuppliers = euroRow.createCell(brokerFirstCell + broker.getSuppliersMap().get(supplierId).getColumn());
+			euroSuppliers.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withMediumBottomBorder()));
 			euroSuppliers.setCellValue(supplier);
 			euroSuppliers.setCellType(Cell.CELL_TYPE_STRING);
 		}
 		
 		if(!broker.hasMinimum()){
-			poundSuppliers.setCellStyle(CellStyles.setMediumBottomBorder(CellStyles.setMediumRightBorder(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook)))));
-			euroSuppliers.setCellStyle(CellStyles.setMediumBottomBorder(CellStyles.setMediumRightBorder(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook)))));
+			poundSuppliers.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withMediumRightBorder().withMediumBottomBorder()));
+			euroSuppliers.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withMediumRightBorder().withMediumBottomBorder()));
 		}
 
-		setBrokerHeader(workbook, sheet, config, broker, brokerFirstCell);
+		setBrokerHeader(styles, sheet, config, broker, brokerFirstCell);
 		
 	}
 	
 	/**
 	 * Fills the Broker name
 	 * 
-	 * @param workbook The representation of the file
+	 * @param styles The workbook styles
 	 * @param sheet The representation of the sheet
 	 * @param config The object that holds the information read from XML file
 	 * @param broker The broker which table will be read
 	 * @param brokerFirstCell The initial column to start read
 	 */
-	private void setBrokerHeader(Workbook workbook, Sheet sheet, RateShopReportConfiguration config, RateShopReportBroker broker, int brokerFirstCell){
+	private void setBrokerHeader(CellStyles styles, Sheet sheet, RateShopReportConfiguration config, RateShopReportBrokerInfo broker, int brokerFirstCell){
 		
 		Row poundRow = sheet.getRow(config.getGridValuesFirstCell().getRow()-2);
 		Row euroRow = sheet.getRow(config.getGridValuesFirstCell().getRow()-2 + config.getConversionTableOffset());
@@ -521,11 +640,11 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 		for(int i = brokerFirstCell; i <= lastColumn;i++){
 			Cell poundBrokerCell = poundRow.createCell(i);
 			poundBrokerCell.setCellValue(broker.getName());
-			poundBrokerCell.setCellStyle(CellStyles.setMediumBorders(CellStyles.getDefaultCellStyle(workbook)));
+			poundBrokerCell.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withMediumBorders()));
 			
 			Cell euroBrokerCell = euroRow.createCell(i);
 			euroBrokerCell.setCellValue(broker.getName());
-			euroBrokerCell.setCellStyle(CellStyles.setMediumBorders(CellStyles.getDefaultCellStyle(workbook)));
+			euroBrokerCell.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withMediumBorders()));
 		}
 		
 		sheet.addMergedRegion(new CellRangeAddress(
@@ -546,11 +665,11 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 	/**
 	 * Fills the groups' column with the names
 	 * 
-	 * @param workbook The representation of the file
+	 * @param styles The workbook styles
 	 * @param sheet The representation of the sheet
 	 * @param config The object that holds the information read from XML file
 	 */
-	private void fillGroups(Workbook workbook, Sheet sheet, RateShopReportConfiguration config) {
+	private void fillGroups(CellStyles styles, Sheet sheet, RateShopReportConfiguration config) {
 		int row = config.getGridValuesFirstCell().getRow();
 		int column = config.getGridValuesFirstCell().getColumn()-1;
 		
@@ -569,75 +688,121 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 				euroRow = sheet.createRow(row + config.getConversionTableOffset());
 			
 			poundGroup = poundRow.createCell(column);
-			poundGroup.setCellStyle(CellStyles.setMediumRightBorder(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook))));
+			poundGroup.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withMediumRightBorder()));
 			poundGroup.setCellValue(group);
 			poundGroup.setCellType(Cell.CELL_TYPE_STRING);
 			
 			euroGroup = euroRow.createCell(column);
-			euroGroup.setCellStyle(CellStyles.setMediumRightBorder(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook))));
+			euroGroup.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withMediumRightBorder()));
 			euroGroup.setCellValue(group);
 			euroGroup.setCellType(Cell.CELL_TYPE_STRING);
 			
 			row++;
 		}
 		
-		poundGroup.setCellStyle(CellStyles.setMediumBottomBorder(CellStyles.setMediumRightBorder(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook)))));
-		euroGroup.setCellStyle(CellStyles.setMediumBottomBorder(CellStyles.setMediumRightBorder(CellStyles.setThinBorders(CellStyles.getDefaultCellStyle(workbook)))));
+		poundGroup.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withMediumRightBorder().withMediumBottomBorder()));
+		euroGroup.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withThinBorders().withMediumRightBorder().withMediumBottomBorder()));
 
 	}
 
 
+	/**
+	 * Writes the static part of the report: the currency symbols, the groups' column and
+	 * the merged regions of the fixed values
+	 * 
+	 * @param styles The workbook styles
+	 * @param sheet The representation of the sheet
+	 * @param config The object that holds the information read from XML file
+	 */
+	private void setSkeleton(CellStyles styles, Sheet sheet, RateShopReportConfiguration config) {
+		setCurrency(styles, sheet, config);
+		fillGroups(styles, sheet, config);
+		
+		sheet.addMergedRegion(new CellRangeAddress(
+				config.getDestinationCell().getRow(), //first row (0-based)
+				config.getDestinationCell().getRow(), //last row  (0-based)
+	            config.getDestinationCell().getColumn(), //first column (0-based)
+	            config.getDestinationCell().getColumn()+2  //last column  (0-based)
+	    ));	
+		
+		sheet.addMergedRegion(new CellRangeAddress(
+				config.getMonthCell().getRow(), //first row (0-based)
+				config.getMonthCell().getRow() + 1 + config.getGroupsList().size(), //last row  (0-based)
+				config.getMonthCell().getColumn(), //first column (0-based)
+				config.getMonthCell().getColumn()  //last column  (0-based)
+	    ));
+		
+		sheet.addMergedRegion(new CellRangeAddress(
+				config.getDayCell().getRow(), //first row (0-based)
+				config.getDayCell().getRow() + 1 + config.getGroupsList().size(), //last row  (0-based)
+				config.getDayCell().getColumn(), //first column (0-based)
+				config.getDayCell().getColumn()  //last column  (0-based)
+	    ));
+		
+		sheet.addMergedRegion(new CellRangeAddress(
+				config.getMonthCell().getRow() + config.getConversionTableOffset(), //first row (0-based)
+				config.getMonthCell().getRow() + config.getConversionTableOffset() + 1 + config.getGroupsList().size(), //last row  (0-based)
+				config.getMonthCell().getColumn(), //first column (0-based)
+				config.getMonthCell().getColumn()  //last column  (0-based)
+	    ));
+		
+		sheet.addMergedRegion(new CellRangeAddress(
+				config.getDayCell().getRow() + config.getConversionTableOffset(), //first row (0-based)
+				config.getDayCell().getRow() + config.getConversionTableOffset() + 1 + config.getGroupsList().size(), //last row  (0-based)
+				config.getDayCell().getColumn(), //first column (0-based)
+				config.getDayCell().getColumn()  //last column  (0-based)
+	    ));
+		
+		sheet.addMergedRegion(new CellRangeAddress(
+				config.getRateCell().getRow(), //first row (0-based)
+				config.getRateCell().getRow(), //last row  (0-based)
+				config.getRateCell().getColumn(), //first column (0-based)
+				config.getRateCell().getColumn() + 1  //last column  (0-based)
+	    ));
+	}
+
 	/**
 	 * Set the fixed values in the report (Destination, Month, Days and Conversion Rate)
 	 * 
-	 * @param workbook The representation of the file
+	 * @param styles The workbook styles
 	 * @param sheet The representation of the sheet
 	 * @param config The object that holds the information read from XML file
 	 * @param reportInfo The object that holds the report basic information
-	 * @throws CurrencyConversionException
+	 * @param exchangeRate The current conversion rate
 	 */
-	private void setFixedValues(Workbook workbook, Sheet sheet, RateShopReportConfiguration config, RateShopUKReportInfo reportInfo) throws CurrencyConversionException {
-		setDestination(workbook, sheet, config, reportInfo);
-		setCurrency(workbook, sheet, config);
-		setMonthAndDate(workbook, sheet, config, reportInfo);
-		setRate(workbook, sheet, config);
+	private void setFixedValues(CellStyles styles, Sheet sheet, RateShopReportConfiguration config, RateShopUKReportInfo reportInfo, double exchangeRate) {
+		setDestination(styles, sheet, config, reportInfo);
+		setMonthAndDate(styles, sheet, config, reportInfo);
+		setRate(styles, sheet, config, exchangeRate);
 	}
 
 	/**
 	 * Set the Destination in the Excel File
-	 * @param workbook The workbook for the Excel File
+	 * @param styles The workbook styles
 	 * @param sheet The sheet that is used
 	 * @param config The RateShopReportConfiguration instance
 	 * @param reportInfo The instance of RateShopUKReportInfo with the basic information
 	 */
-	private void setDestination(Workbook workbook, Sheet sheet, RateShopReportConfiguration config, RateShopUKReportInfo reportInfo) {
+	private void setDestination(CellStyles styles, Sheet sheet, RateShopReportConfiguration config, RateShopUKReportInfo reportInfo) {
 		Row destination = sheet.getRow(config.getDestinationCell().getRow());
 		
 		if(destination == null)
 			destination = sheet.createRow(config.getDestinationCell().getRow());
 		
-		
-		sheet.addMergedRegion(new CellRangeAddress(
-				destination.getRowNum(), //first row (0-based)
-				destination.getRowNum(), //last row  (0-based)
-	            config.getDestinationCell().getColumn(), //first column (0-based)
-	            config.getDestinationCell().getColumn()+2  //last column  (0-based)
-	    ));	
-		
 		Cell cell = destination.createCell(config.getDestinationCell().getColumn());
 		cell.setCellValue(reportInfo.getDestination());
-		cell.setCellStyle(CellStyles.setBoldAndColor(CellStyles.getDefaultCellStyle(workbook), HSSFColor.RED.index, CellStyles.TEXT_SIZE_LARGE, workbook));		
+		cell.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withBoldAndColor(HSSFColor.RED.index, CellStyles.TEXT_SIZE_LARGE)));		
 		
 	}
 
 	/**
 	 * Set the currency
 	 * 
-	 * @param workbook The workbook for the Excel File
+	 * @param styles The workbook styles
 	 * @param sheet The sheet that is used
 	 * @param config The RateShopReportConfiguration instance
 	 */
-	private void setCurrency(Workbook workbook, Sheet sheet, RateShopReportConfiguration config) {
+	private void setCurrency(CellStyles styles, Sheet sheet, RateShopReportConfiguration config) {
 		
 		final int numberOfRowForCurrencySymbol = 2;
 		
@@ -648,8 +813,8 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 				currency = sheet.createRow((config.getDestinationCell().getRow() + 1) + i);
 			
 			Cell cell = currency.createCell(config.getGridValuesFirstCell().getColumn()-1);
-			cell.setCellValue("");
-			cell.setCellStyle(CellStyles.setBoldAndColor(CellStyles.setMediumBorders(CellStyles.getDefaultCellStyle(workbook)), HSSFColor.RED.index, CellStyles.TEXT_SIZE_MEDIUM, workbook));
+			cell.setCellValue("£");
+			cell.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withMediumBorders().withBoldAndColor(HSSFColor.RED.index, CellStyles.TEXT_SIZE_MEDIUM)));
 		}
 		
 		sheet.addMergedRegion(new CellRangeAddress(
@@ -666,8 +831,8 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 				currency = sheet.createRow((config.getDestinationCell().getRow() + 1) + config.getConversionTableOffset() + i);
 			
 			Cell cell = currency.createCell(config.getGridValuesFirstCell().getColumn()-1);
-			cell.setCellValue("");
-			cell.setCellStyle(CellStyles.setBoldAndColor(CellStyles.setMediumBorders(CellStyles.getDefaultCellStyle(workbook)), HSSFColor.RED.index, CellStyles.TEXT_SIZE_MEDIUM, workbook));
+			cell.setCellValue("€");
+			cell.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withMediumBorders().withBoldAndColor(HSSFColor.RED.index, CellStyles.TEXT_SIZE_MEDIUM)));
 		}
 		
 		sheet.addMergedRegion(new CellRangeAddress(
@@ -682,12 +847,12 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 	/**
 	 * Set month and days for the report
 	 * 
-	 * @param workbook The workbook for the Excel File
+	 * @param styles The workbook styles
 	 * @param sheet The sheet that is used
 	 * @param config The RateShopReportConfiguration instance
 	 * @param reportInfo The instance of RateShopUKReportInfo with the basic information
 	 */
-	private void setMonthAndDate(Workbook workbook, Sheet sheet, RateShopReportConfiguration config, RateShopUKReportInfo reportInfo) {
+	private void setMonthAndDate(CellStyles styles, Sheet sheet, RateShopReportConfiguration config, RateShopUKReportInfo reportInfo) {
 		Locale l = new Locale("pt", "PT");
 		
 		for (int i = config.getMonthCell().getRow(); i <= 1 + config.getMonthCell().getRow() + config.getGroupsList().size(); i++) {
@@ -701,8 +866,8 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 				euroRow = sheet.createRow(i + config.getConversionTableOffset());
 			
 			
-			CellStyle monthStyle = CellStyles.setRotation(CellStyles.setMediumBorders(CellStyles.setBoldAndColor(CellStyles.getDefaultCellStyle(workbook), HSSFColor.RED.index, CellStyles.TEXT_SIZE_MEDIUM, workbook)));
-			CellStyle dayStyle = CellStyles.setRotation(CellStyles.setMediumBorders(CellStyles.setColor(CellStyles.getDefaultCellStyle(workbook), HSSFColor.RED.index, CellStyles.TEXT_SIZE_MEDIUM, workbook)));
+			CellStyle monthStyle = styles.get(CellStyleDescriptor.DEFAULT.withBoldAndColor(HSSFColor.RED.index, CellStyles.TEXT_SIZE_MEDIUM).withMediumBorders().withRotation());
+			CellStyle dayStyle = styles.get(CellStyleDescriptor.DEFAULT.withColor(HSSFColor.RED.index, CellStyles.TEXT_SIZE_MEDIUM).withMediumBorders().withRotation());
 			
 			Cell poundMonthCell = poundRow.createCell(config.getMonthCell().getColumn());
 			poundMonthCell.setCellValue(reportInfo.getStartDate().getDisplayName(Calendar.MONTH, Calendar.LONG, l));
@@ -721,37 +886,6 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 			euroDayCell.setCellStyle(dayStyle);
 		}
 		
-		
-		sheet.addMergedRegion(new CellRangeAddress(
-				config.getMonthCell().getRow(), //first row (0-based)
-				config.getMonthCell().getRow() + 1 + config.getGroupsList().size(), //last row  (0-based)
-				config.getMonthCell().getColumn(), //first column (0-based)
-				config.getMonthCell().getColumn()  //last column  (0-based)
-	    ));
-		
-		
-		sheet.addMergedRegion(new CellRangeAddress(
-				config.getDayCell().getRow(), //first row (0-based)
-				config.getDayCell().getRow() + 1 + config.getGroupsList().size(), //last row  (0-based)
-				config.getDayCell().getColumn(), //first column (0-based)
-				config.getDayCell().getColumn()  //last column  (0-based)
-	    ));
-		
-		sheet.addMergedRegion(new CellRangeAddress(
-				config.getMonthCell().getRow() + config.getConversionTableOffset(), //first row (0-based)
-				config.getMonthCell().getRow() + config.getConversionTableOffset() + 1 + config.getGroupsList().size(), //last row  (0-based)
-				config.getMonthCell().getColumn(), //first column (0-based)
-				config.getMonthCell().getColumn()  //last column  (0-based)
-	    ));
-		
-		
-		sheet.addMergedRegion(new CellRangeAddress(
-				config.getDayCell().getRow() + config.getConversionTableOffset(), //first row (0-based)
-				config.getDayCell().getRow() + config.getConversionTableOffset() + 1 + config.getGroupsList().size(), //last row  (0-based)
-				config.getDayCell().getColumn(), //first column (0-based)
-				config.getDayCell().getColumn()  //last column  (0-based)
-	    ));
-		
 		sheet.autoSizeColumn(config.getMonthCell().getColumn(), true);
 		sheet.autoSizeColumn(config.getDayCell().getColumn(), true);
 	}
@@ -760,56 +894,51 @@ public class RateShopUKReportGenerator implements IReportGenerator {
 	/**
 	 * Set the current conversion rate
 	 * 
-	 * @param workbook The workbook for the Excel File
+	 * @param styles The workbook styles
 	 * @param sheet The sheet that is used
 	 * @param config The RateShopReportConfiguration instance
-	 * @throws CurrencyConversionException
+	 * @param exchangeRate The current conversion rate
 	 */
-	private void setRate(Workbook workbook, Sheet sheet, RateShopReportConfiguration config) throws CurrencyConversionException {
-		
-		double exchangeRate = ExchangeRateService.getExchangeRate("EUR", "GBP", 4);
-		
-		if(exchangeRate == 0)
-			throw new IllegalArgumentException();
+	private void setRate(CellStyles styles, Sheet sheet, RateShopReportConfiguration config, double exchangeRate) {
 		
 		Row rate = sheet.getRow(config.getRateCell().getRow());
 		
 		if(rate == null)
 			rate = sheet.createRow(config.getRateCell().getRow());
 		
-		
-		sheet.addMergedRegion(new CellRangeAddress(
-				rate.getRowNum(), //first row (0-based)
-				rate.getRowNum(), //last row  (0-based)
-				config.getRateCell().getColumn(), //first column (0-based)
-				config.getRateCell().getColumn() + 1  //last column  (0-based)
-	    ));
-		
 		Cell excRate = rate.createCell(config.getRateCell().getColumn());
 		excRate.setCellValue(exchangeRate);
 		excRate.setCellType(Cell.CELL_TYPE_NUMERIC);
-		excRate.setCellStyle(CellStyles.setBackground(CellStyles.setBold(CellStyles.getDefaultCellStyle(workbook), CellStyles.TEXT_SIZE_SMALL, workbook), IndexedColors.LIME.index));	
+		excRate.setCellStyle(styles.get(CellStyleDescriptor.DEFAULT.withBold(CellStyles.TEXT_SIZE_SMALL).withBackground(IndexedColors.LIME.index)));	
 	}
 	
 	/**
 	 * Saves a XLSX Report with a specific name
 	 * 
-	 * @param destination The destination
-	 * @param puDate The initial date
-	 * @param doDate The end date
-	 * @throws IOException When can't create the file
+	 * @param workbook The representation of the file
+	 * @param reportInfo The object that holds the report basic information
+	 * @param reportDate The report date
+	 * @param sink The destination of the report
+	 * @throws IOException When can't write the report
 	 */
-	private void saveFile(Workbook workbook, RateShopUKReportInfo reportInfo, Calendar reportDate, Country country) throws IOException{
-		FileOutputStream out;
+	private void saveFile(Workbook workbook, RateShopUKReportInfo reportInfo, Calendar reportDate, IReportSink sink) throws IOException{
 		DateFormat dateFormat = new SimpleDateFormat("dd-MM-yy HH_mm");
 		
-		// TODO: Specify output file location 
 		// Do we net to put the country in the name?
-		out = new FileOutputStream(String.format("R %s RATE_SHOP_UK_%s_%s_A_%s.xlsx", dateFormat.format(reportDate.getTime()), reportInfo.getDestination(), getDate(reportInfo.getStartDate()), getDate(reportInfo.getEndDate())));
+		String reportName = String.format("R %s RATE_SHOP_UK_%s_%s_A_%s.xlsx", dateFormat.format(reportDate.getTime()), reportInfo.getDestination(), getDate(reportInfo.getStartDate()), getDate(reportInfo.getEndDate()));
 	
-		XSSFFormulaEvaluator.evaluateAllFormulaCells((XSSFWorkbook)workbook);
-		workbook.write(out);
-		out.close();
+		if(_evaluateFormulas)
+			XSSFFormulaEvaluator.evaluateAllFormulaCells((XSSFWorkbook)workbook);
+		else
+			workbook.setForceFormulaRecalculation(true);
+		
+		OutputStream out = sink.open(reportName);
+		
+		try {
+			workbook.write(out);
+		} finally {
+			out.close();
+		}
 	}
 
 	
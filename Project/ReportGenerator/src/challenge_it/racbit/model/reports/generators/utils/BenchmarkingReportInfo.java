@@ -1,11 +1,13 @@
 package challenge_it.racbit.model.reports.generators.utils;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
-import challenge_it.racbit.model.core.Product;
 import challenge_it.racbit.model.core.Product.Group;
+import challenge_it.racbit.model.core.Product.SupplierType;
+import challenge_it.racbit.model.core.ProductBatch;
 
 public class BenchmarkingReportInfo{
 	
@@ -42,19 +44,64 @@ public class BenchmarkingReportInfo{
 
 		private int _numberOfDays;
 		
-		private Map<String, Product> _products;
+		/**
+		 * The broker ids {@see ProductBatch.Cursor#getBrokerId()}, ascending, and the row
+		 * of the product of each broker
+		 */
+		private int[] _brokers, _rows;
+		
+		private int _size;
 		
 		public BenchmarkingDay(int numberOfDays) {
 			_numberOfDays = numberOfDays;
-			_products = new HashMap<String, Product>();
+			_brokers = new int[4];
+			_rows = new int[4];
+		}
+		
+		/**
+		 * Adds the product of a broker, replacing the one it had
+		 * 
+		 * @param brokerId The broker id
+		 * @param row The row of the product in the batch
+		 */
+		public void addProduct(int brokerId, int row){
+			int index = Arrays.binarySearch(_brokers, 0, _size, brokerId);
+			
+			if(index >= 0){
+				_rows[index] = row;
+				return;
+			}
+			
+			index = -index - 1;
+			if(_size == _brokers.length){
+				_brokers = Arrays.copyOf(_brokers, _size * 2);
+				_rows = Arrays.copyOf(_rows, _size * 2);
+			}
+			
+			System.arraycopy(_brokers, index, _brokers, index + 1, _size - index);
+			System.arraycopy(_rows, index, _rows, index + 1, _size - index);
+			_brokers[index] = brokerId;
+			_rows[index] = row;
+			_size++;
 		}
 		
-		public void addProduct(Product product){
-			_products.put(product.getBroker(), product);
+		/**
+		 * Gets the number of products, one per broker
+		 * 
+		 * @return The number of products
+		 */
+		public int size(){
+			return _size;
 		}
 		
-		public Map<String, Product> getProducts(){
-			return _products;
+		/**
+		 * Gets the row of a product in the batch {@see BenchmarkingReportInfo#getBatch()}
+		 * 
+		 * @param index The index of the product, ordered by broker id
+		 * @return The row
+		 */
+		public int getRow(int index){
+			return _rows[index];
 		}
 		
 		public int getNumberOfDays(){
@@ -94,9 +141,29 @@ public class BenchmarkingReportInfo{
 	
 	private Map<String, BenchmarkingLocation> _lowCost;
 	
-	public BenchmarkingReportInfo(){
+	/**
+	 * The products whose rows are placed
+	 */
+	private final ProductBatch _batch;
+	
+	/**
+	 * Creates an instance without products
+	 * 
+	 * @param batch The products that will be placed
+	 */
+	public BenchmarkingReportInfo(ProductBatch batch){
 		_regular = new HashMap<String, BenchmarkingLocation> ();
 		_lowCost = new HashMap<String, BenchmarkingLocation> ();
+		_batch = batch;
+	}
+	
+	/**
+	 * Gets the products whose rows are placed
+	 * 
+	 * @return The batch
+	 */
+	public ProductBatch getBatch(){
+		return _batch;
 	}
 	
 	public Map<String, BenchmarkingLocation> getRegulars(){
@@ -122,4 +189,45 @@ public class BenchmarkingReportInfo{
 	public BenchmarkingLocation checkLowCostLocation(String name){
 		return _lowCost.get(name);
 	}
+	
+	/**
+	 * Places a product in its location, group and number of days
+	 * 
+	 * @param product The cursor, at the row of the product in the batch
+	 */
+	public void addProduct(ProductBatch.Cursor product){
+		BenchmarkingLocation location;
+		String name = product.getLocation();
+		
+		if(product.getSupplierType() == SupplierType.LOW_COST){
+			location = checkLowCostLocation(name);
+			
+			if(location == null){
+				location = new BenchmarkingLocation(name);
+				addLowCost(name, location);
+			}
+		}
+		else{
+			location = checkRegularLocation(name);
+			
+			if(location == null){
+				location = new BenchmarkingLocation(name);
+				addRegular(name, location);
+			}
+		}
+		
+		BenchmarkingGroup group = location.checkGroup(product.getGroup());
+		if(group == null){
+			group = new BenchmarkingGroup(product.getGroup());
+			location.addGroup(product.getGroup(), group);
+		}
+		
+		BenchmarkingDay day = group.checkDay(product.getNumberOfDays());
+		if(day == null){
+			day = new BenchmarkingDay(product.getNumberOfDays());
+			group.addDay(product.getNumberOfDays(), day);
+		}
+		
+		day.addProduct(product.getBrokerId(), product.getRow());
+	}
 }
\ No newline at end of file
@@ -0,0 +1,193 @@
+package challenge_it.racbit.model.reports.generators.utils;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.IndexedColors;
+
+/**
+ * Describes all the attributes of a cell style (data format, borders, fill color, font size,
+ * bold, font color, alignment and rotation).
+ *
+ * Instances are immutable: each of the "with" methods returns a new descriptor with the
+ * changed attribute. Two descriptors with the same attributes are equal, so they are used
+ * to share the cell styles of a workbook (see {@link CellStyles}).
+ */
+public final class CellStyleDescriptor {
+
+	/**
+	 * The default style used for the cells that contains values
+	 */
+	public static final CellStyleDescriptor DEFAULT = new CellStyleDescriptor("0.00",
+			CellStyle.BORDER_NONE, CellStyle.BORDER_NONE, CellStyle.BORDER_NONE, CellStyle.BORDER_NONE,
+			IndexedColors.WHITE.getIndex(), CellStyles.TEXT_SIZE_SMALL, false, Font.COLOR_NORMAL, CellStyles.ALIGN_CENTER, (short) 0);
+
+	/**
+	 * The data format
+	 */
+	private final String _dataFormat;
+
+	/**
+	 * The borders
+	 */
+	private final short _borderTop, _borderBottom, _borderLeft, _borderRight;
+
+	/**
+	 * The background color
+	 */
+	private final short _fillColor;
+
+	/**
+	 * The font size
+	 */
+	private final short _fontSize;
+
+	/**
+	 * States that the font is bold
+	 */
+	private final boolean _bold;
+
+	/**
+	 * The font color
+	 */
+	private final short _fontColor;
+
+	/**
+	 * The horizontal alignment
+	 */
+	private final short _alignment;
+
+	/**
+	 * The text rotation
+	 */
+	private final short _rotation;
+
+	/**
+	 * Creates an instance with the given attributes.
+	 */
+	private CellStyleDescriptor(String dataFormat, short borderTop, short borderBottom, short borderLeft, short borderRight,
+			short fillColor, short fontSize, boolean bold, short fontColor, short alignment, short rotation){
+		_dataFormat = dataFormat;
+		_borderTop = borderTop;
+		_borderBottom = borderBottom;
+		_borderLeft = borderLeft;
+		_borderRight = borderRight;
+		_fillColor = fillColor;
+		_fontSize = fontSize;
+		_bold = bold;
+		_fontColor = fontColor;
+		_alignment = alignment;
+		_rotation = rotation;
+	}
+
+	public CellStyleDescriptor withDataFormat(String format){
+		return new CellStyleDescriptor(format, _borderTop, _borderBottom, _borderLeft, _borderRight, _fillColor, _fontSize, _bold, _fontColor, _alignment, _rotation);
+	}
+
+	public CellStyleDescriptor withAlignment(short align){
+		return new CellStyleDescriptor(_dataFormat, _borderTop, _borderBottom, _borderLeft, _borderRight, _fillColor, _fontSize, _bold, _fontColor, align, _rotation);
+	}
+
+	public CellStyleDescriptor withThinBorders(){
+		return withBorders(CellStyle.BORDER_THIN, CellStyle.BORDER_THIN, CellStyle.BORDER_THIN, CellStyle.BORDER_THIN);
+	}
+
+	public CellStyleDescriptor withMediumBorders(){
+		return withBorders(CellStyle.BORDER_MEDIUM, CellStyle.BORDER_MEDIUM, CellStyle.BORDER_MEDIUM, CellStyle.BORDER_MEDIUM);
+	}
+
+	public CellStyleDescriptor withMediumBottomBorder(){
+		return withBorders(_borderTop, CellStyle.BORDER_MEDIUM, _borderLeft, _borderRight);
+	}
+
+	public CellStyleDescriptor withMediumRightBorder(){
+		return withBorders(_borderTop, _borderBottom, _borderLeft, CellStyle.BORDER_MEDIUM);
+	}
+
+	public CellStyleDescriptor withMediumLeftBorder(){
+		return withBorders(_borderTop, _borderBottom, CellStyle.BORDER_MEDIUM, _borderRight);
+	}
+
+	public CellStyleDescriptor withMediumTopBorder(){
+		return withBorders(CellStyle.BORDER_MEDIUM, _borderBottom, _borderLeft, _borderRight);
+	}
+
+	private CellStyleDescriptor withBorders(short top, short bottom, short left, short right){
+		return new CellStyleDescriptor(_dataFormat, top, bottom, left, right, _fillColor, _fontSize, _bold, _fontColor, _alignment, _rotation);
+	}
+
+	public CellStyleDescriptor withBoldAndColor(short color, short textSize){
+		return withFont(textSize, true, color);
+	}
+
+	public CellStyleDescriptor withColor(short color, short textSize){
+		return withFont(textSize, false, color);
+	}
+
+	public CellStyleDescriptor withBold(short textSize){
+		return withFont(textSize, true, Font.COLOR_NORMAL);
+	}
+
+	private CellStyleDescriptor withFont(short textSize, boolean bold, short color){
+		return new CellStyleDescriptor(_dataFormat, _borderTop, _borderBottom, _borderLeft, _borderRight, _fillColor, textSize, bold, color, _alignment, _rotation);
+	}
+
+	public CellStyleDescriptor withBackground(short color){
+		return new CellStyleDescriptor(_dataFormat, _borderTop, _borderBottom, _borderLeft, _borderRight, color, _fontSize, _bold, _fontColor, _alignment, _rotation);
+	}
+
+	public CellStyleDescriptor withRotation(){
+		return new CellStyleDescriptor(_dataFormat, _borderTop, _borderBottom, _borderLeft, _borderRight, _fillColor, _fontSize, _bold, _fontColor, _alignment, (short)90);
+	}
+
+	public String getDataFormat() { return _dataFormat; }
+
+	public short getBorderTop() { return _borderTop; }
+
+	public short getBorderBottom() { return _borderBottom; }
+
+	public short getBorderLeft() { return _borderLeft; }
+
+	public short getBorderRight() { return _borderRight; }
+
+	public short getFillColor() { return _fillColor; }
+
+	public short getFontSize() { return _fontSize; }
+
+	public boolean isBold() { return _bold; }
+
+	public short getFontColor() { return _fontColor; }
+
+	public short getAlignment() { return _alignment; }
+
+	public short getRotation() { return _rotation; }
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(Object other)
+	{
+		boolean result = false;
+		if (other instanceof CellStyleDescriptor)
+		{
+			CellStyleDescriptor that = (CellStyleDescriptor) other;
+			result = (this == that) || (_dataFormat.equals(that._dataFormat)
+					&& _borderTop == that._borderTop && _borderBottom == that._borderBottom
+					&& _borderLeft == that._borderLeft && _borderRight == that._borderRight
+					&& _fillColor == that._fillColor && _fontSize == that._fontSize
+					&& _bold == that._bold && _fontColor == that._fontColor
+					&& _alignment == that._alignment && _rotation == that._rotation);
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode()
+	{
+		return java.util.Objects.hash(_dataFormat, _borderTop, _borderBottom, _borderLeft, _borderRight,
+				_fillColor, _fontSize, _bold, _fontColor, _alignment, _rotation);
+	}
+}
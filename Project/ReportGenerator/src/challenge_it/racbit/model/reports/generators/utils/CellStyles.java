@@ -1,10 +1,23 @@
 package challenge_it.racbit.model.reports.generators.utils;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormat;
 import org.apache.poi.ss.usermodel.Font;
-import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.Workbook;
 
+/**
+ * Registry of the cell styles of a workbook.
+ * 
+ * Each distinct {@link CellStyleDescriptor} is created only once in the workbook, along with
+ * its font and data format, and the same {@link CellStyle} instance is handed back to every
+ * cell that uses it. For that reason, the returned styles are shared and must not be changed;
+ * a different style is obtained by getting the style of a different descriptor.
+ * 
+ * This class instances are not thread-safe.
+ */
 public class CellStyles {
 
 	public static final short TEXT_SIZE_SMALL = 8;
@@ -18,127 +31,160 @@ public class CellStyles {
 	public static final String DECIMAL_POINT_NONE = "0";
 	public static final String DECIMAL_POINT_FOUR = "0.0000";
 	
+	public static final String FONT_NAME = "Verdana";
+	
 	/**
-	 * Gets the default style used for the cells that contains values
-	 * 
-	 * @param workbook The representation of the file
-	 * @return the default cell style
+	 * The workbook that owns the styles
 	 */
-	public static CellStyle getDefaultCellStyle(Workbook workbook) {
-		CellStyle style = workbook.createCellStyle();
-		style.setFillForegroundColor(IndexedColors.WHITE.getIndex());
-		style.setFillPattern(CellStyle.SOLID_FOREGROUND);
-
-		style.setAlignment(ALIGN_CENTER);
-		style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
-		
-	    Font font = workbook.createFont();
-	    font.setFontHeightInPoints(TEXT_SIZE_SMALL);
-	    font.setFontName("Verdana");
-		style.setFont(font);
-		
-		style.setDataFormat(workbook.createDataFormat().getFormat("0.00"));
-		
-		return style;
-	}
+	private final Workbook _workbook;
 	
-	public static CellStyle setDataFormat(Workbook workbook, CellStyle style, String format){
-		style.setDataFormat(workbook.createDataFormat().getFormat(format));
-		
-		return style;
-	}
+	/**
+	 * The workbook data formats
+	 */
+	private final DataFormat _dataFormat;
 	
-	public static CellStyle setAligment(CellStyle style, short align){
-		style.setAlignment(align);
-		return style;
-	}
+	/**
+	 * Contains the styles already created, by descriptor
+	 */
+	private final Map<CellStyleDescriptor, CellStyle> _styles;
 	
-	public static CellStyle setThinBorders(CellStyle style){
-		style.setBorderBottom(CellStyle.BORDER_THIN);
-		style.setBorderLeft(CellStyle.BORDER_THIN);
-		style.setBorderRight(CellStyle.BORDER_THIN);
-		style.setBorderTop(CellStyle.BORDER_THIN);
-		
-		return style;
-	}
+	/**
+	 * Contains the descriptors of the styles already created, by style index
+	 */
+	private final Map<Short, CellStyleDescriptor> _descriptors;
 	
-	public static CellStyle setMediumBorders(CellStyle style){
-		style.setBorderBottom(CellStyle.BORDER_MEDIUM);
-		style.setBorderLeft(CellStyle.BORDER_MEDIUM);
-		style.setBorderRight(CellStyle.BORDER_MEDIUM);
-		style.setBorderTop(CellStyle.BORDER_MEDIUM);
-		
-		return style;
-	}
+	/**
+	 * Contains the fonts already created, by size, bold and color
+	 */
+	private final Map<String, Font> _fonts;
 	
-	public static CellStyle setMediumBottomBorder(CellStyle style){
-		style.setBorderBottom(CellStyle.BORDER_MEDIUM);
-		
-		return style;
-	}
+	/**
+	 * Contains the data formats already looked up
+	 */
+	private final Map<String, Short> _formats;
 	
-	public static CellStyle setMediumRightBorder(CellStyle style){
-		style.setBorderRight(CellStyle.BORDER_MEDIUM);
-		
-		return style;
+	/**
+	 * Creates the registry for the styles of the given workbook
+	 * 
+	 * @param workbook The representation of the file
+	 */
+	public CellStyles(Workbook workbook) {
+		_workbook = workbook;
+		_dataFormat = workbook.createDataFormat();
+		_styles = new HashMap<CellStyleDescriptor, CellStyle>();
+		_descriptors = new HashMap<Short, CellStyleDescriptor>();
+		_fonts = new HashMap<String, Font>();
+		_formats = new HashMap<String, Short>();
 	}
 	
-	public static CellStyle setMediumLeftBorder(CellStyle style){
-		style.setBorderLeft(CellStyle.BORDER_MEDIUM);
-		
-		return style;
+	/**
+	 * Gets the default style used for the cells that contains values
+	 * 
+	 * @return the default cell style
+	 */
+	public CellStyle getDefaultCellStyle() {
+		return get(CellStyleDescriptor.DEFAULT);
 	}
 	
-	public static CellStyle setMediumTopBorder(CellStyle style){
-		style.setBorderTop(CellStyle.BORDER_MEDIUM);
+	/**
+	 * Gets the workbook style with the given attributes, creating it if it doesn't exist yet
+	 * 
+	 * @param descriptor The style attributes
+	 * @return the shared cell style
+	 */
+	public CellStyle get(CellStyleDescriptor descriptor) {
+		CellStyle style = _styles.get(descriptor);
 		
-		return style;
-	}
-	
-	public static CellStyle setBoldAndColor(CellStyle style, short color, short textSize, Workbook workbook){
-		Font font = workbook.createFont();
-	    font.setFontHeightInPoints(textSize);
-	    font.setFontName("Verdana");
-	    font.setColor(color);
-	    font.setBoldweight(Font.BOLDWEIGHT_BOLD);
-		style.setFont(font);
+		if(style == null){
+			style = _workbook.createCellStyle();
+			style.setFillForegroundColor(descriptor.getFillColor());
+			style.setFillPattern(CellStyle.SOLID_FOREGROUND);
+			
+			style.setAlignment(descriptor.getAlignment());
+			style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+			style.setRotation(descriptor.getRotation());
+			
+			style.setBorderTop(descriptor.getBorderTop());
+			style.setBorderBottom(descriptor.getBorderBottom());
+			style.setBorderLeft(descriptor.getBorderLeft());
+			style.setBorderRight(descriptor.getBorderRight());
+			
+			style.setFont(getFont(descriptor));
+			style.setDataFormat(getDataFormat(descriptor.getDataFormat()));
+			
+			_styles.put(descriptor, style);
+			_descriptors.put(style.getIndex(), descriptor);
+		}
 		
 		return style;
 	}
 	
-	public static CellStyle setColor(CellStyle style, short color, short textSize, Workbook workbook){
-		Font font = workbook.createFont();
-	    font.setFontHeightInPoints(textSize);
-	    font.setFontName("Verdana");
-	    font.setColor(color);
-		style.setFont(font);
+	/**
+	 * Gets the descriptor of a style obtained from this registry
+	 * 
+	 * @param style The cell style
+	 * @return the style attributes
+	 * @throws IllegalArgumentException if the style wasn't obtained from this registry
+	 */
+	public CellStyleDescriptor getDescriptor(CellStyle style) {
+		CellStyleDescriptor descriptor = _descriptors.get(style.getIndex());
 		
-		return style;
+		if(descriptor == null)
+			throw new IllegalArgumentException();
+		
+		return descriptor;
 	}
 	
-	public static CellStyle setBold(CellStyle style, short textSize, Workbook workbook){
-		Font font = workbook.createFont();
-	    font.setFontHeightInPoints(textSize);
-	    font.setFontName("Verdana");
-	    font.setBoldweight(Font.BOLDWEIGHT_BOLD);
-		style.setFont(font);
-		
-		return style;
+	/**
+	 * Gets the number of distinct styles used in the workbook
+	 * 
+	 * @return the number of styles
+	 */
+	public int getNumberOfStyles() {
+		return _styles.size();
 	}
 	
-	public static CellStyle setBackground(CellStyle style, short color){
-		style.setFillForegroundColor(color);
-		style.setFillPattern(CellStyle.SOLID_FOREGROUND);
+	/**
+	 * Gets the font for the given style attributes, creating it if it doesn't exist yet
+	 * 
+	 * @param descriptor The style attributes
+	 * @return the font
+	 */
+	private Font getFont(CellStyleDescriptor descriptor) {
+		String key = descriptor.getFontSize() + ":" + descriptor.isBold() + ":" + descriptor.getFontColor();
+		Font font = _fonts.get(key);
 		
-		return style;
+		if(font == null){
+			font = _workbook.createFont();
+			font.setFontHeightInPoints(descriptor.getFontSize());
+			font.setFontName(FONT_NAME);
+			
+			if(descriptor.getFontColor() != Font.COLOR_NORMAL)
+				font.setColor(descriptor.getFontColor());
+			
+			if(descriptor.isBold())
+				font.setBoldweight(Font.BOLDWEIGHT_BOLD);
+			
+			_fonts.put(key, font);
+		}
+		
+		return font;
 	}
 	
-	public static CellStyle setRotation(CellStyle style){
-		style.setRotation((short)90);
+	/**
+	 * Gets the index of the given data format
+	 * 
+	 * @param format The data format (e.g. 0.00)
+	 * @return the index of the format
+	 */
+	private short getDataFormat(String format) {
+		Short index = _formats.get(format);
 		
-		return style;
+		if(index == null){
+			index = _dataFormat.getFormat(format);
+			_formats.put(format, index);
+		}
+		
+		return index;
 	}
-
 }
-
-
@@ -0,0 +1,156 @@
+package challenge_it.racbit.model.reports.generators.utils;
+
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * Plans the width of the sheet columns while the report is rendered.
+ *
+ * The text written to a column is recorded with its style and only the widest one is kept;
+ * the widths are set once, through {@link #apply(ReportGrid)}, before any row is written, as
+ * the streamed grids require. The width of each text is
+ * measured the same way as {@link Sheet#autoSizeColumn(int)} does, but without going through
+ * the whole column every time, so it also works with streaming workbooks, whose flushed rows
+ * can't be read anymore.
+ *
+ * This class instances are not thread-safe.
+ */
+public class ColumnWidthPlanner {
+
+	/**
+	 * The character used as the unit of the column width
+	 */
+	private static final char DEFAULT_CHAR = '0';
+
+	/**
+	 * The largest width allowed for a column (in 1/256th of a character)
+	 */
+	private static final int MAX_COLUMN_WIDTH = 255*256;
+
+	private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, true, true);
+
+	/**
+	 * The width of the default character in the workbook's default font
+	 */
+	private final int _defaultCharWidth;
+
+	/**
+	 * Contains the widest text width of each column (in characters)
+	 */
+	private final Map<Integer, Double> _widths;
+
+	/**
+	 * Contains the width of the texts already measured
+	 */
+	private final Map<String, Double> _measured;
+
+	/**
+	 * Creates a planner for the columns of the given workbook
+	 *
+	 * @param workbook The representation of the file
+	 */
+	public ColumnWidthPlanner(Workbook workbook) {
+		this(workbook.getFontAt((short) 0));
+	}
+
+	/**
+	 * Creates a planner for the columns of a workbook whose default font is the given one
+	 *
+	 * @param defaultFontName The name of the workbook's default font
+	 * @param defaultFontSize The size of the workbook's default font, in points
+	 */
+	public ColumnWidthPlanner(String defaultFontName, short defaultFontSize) {
+		this(getFont(defaultFontName, defaultFontSize, false));
+	}
+
+	/**
+	 * Creates a planner for the columns of the given workbook's default font
+	 */
+	private ColumnWidthPlanner(Font defaultFont) {
+		this(getFont(defaultFont.getFontName(), defaultFont.getFontHeightInPoints(), defaultFont.getBoldweight() == Font.BOLDWEIGHT_BOLD));
+	}
+
+	/**
+	 * Creates a planner that measures the texts against the given default font
+	 */
+	private ColumnWidthPlanner(java.awt.Font defaultFont) {
+		_defaultCharWidth = (int) new TextLayout(String.valueOf(DEFAULT_CHAR), defaultFont, FONT_RENDER_CONTEXT).getAdvance();
+		_widths = new HashMap<Integer, Double>();
+		_measured = new HashMap<String, Double>();
+	}
+
+	/**
+	 * Records a text written to the given column
+	 *
+	 * @param column The column index
+	 * @param text The text of the cell
+	 * @param style The style of the cell
+	 */
+	public void record(int column, String text, CellStyleDescriptor style) {
+		if(text == null || text.isEmpty())
+			return;
+
+		double width = measure(text, style);
+		Double current = _widths.get(column);
+
+		if(current == null || width > current)
+			_widths.put(column, width);
+	}
+
+	/**
+	 * Sets the width of every recorded column
+	 *
+	 * @param grid The grid where the report is written
+	 */
+	public void apply(ReportGrid grid) {
+		for(Map.Entry<Integer, Double> width : _widths.entrySet())
+			grid.setColumnWidth(width.getKey(), Math.min((int) (width.getValue() * 256), MAX_COLUMN_WIDTH));
+	}
+
+	/**
+	 * Gets the width of a text, in characters, padded with one default character as
+	 * {@link Sheet#autoSizeColumn(int)} does
+	 *
+	 * @param text The text
+	 * @param style The style of the cell
+	 * @return The width of the text
+	 */
+	private double measure(String text, CellStyleDescriptor style) {
+		String key = style.getFontSize() + ":" + style.isBold() + ":" + text;
+		Double width = _measured.get(key);
+
+		if(width == null){
+			TextLayout layout = new TextLayout(text + DEFAULT_CHAR, getFont(CellStyles.FONT_NAME, style.getFontSize(), style.isBold()), FONT_RENDER_CONTEXT);
+			width = layout.getBounds().getWidth() / _defaultCharWidth;
+			_measured.put(key, width);
+		}
+
+		return width;
+	}
+
+	/**
+	 * Gets the AWT font used to measure the texts
+	 *
+	 * @param name The font name
+	 * @param size The font size, in points
+	 * @param bold States that the font is bold
+	 * @return The font
+	 */
+	private static java.awt.Font getFont(String name, short size, boolean bold) {
+		Map<TextAttribute, Object> attributes = new HashMap<TextAttribute, Object>();
+		attributes.put(TextAttribute.FAMILY, name);
+		attributes.put(TextAttribute.SIZE, (float) size);
+
+		if(bold)
+			attributes.put(TextAttribute.WEIGHT, TextAttribute.WEIGHT_BOLD);
+
+		return new java.awt.Font(attributes);
+	}
+}
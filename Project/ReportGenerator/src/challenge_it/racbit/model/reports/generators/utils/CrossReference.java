@@ -4,7 +4,7 @@ package challenge_it.racbit.model.reports.generators.utils;
 /**
  * Represents a row and a column of a cell
  * 
- *  @author Ctia Moreira e Joo Taborda
+ *  @author Cátia Moreira e João Taborda
  *
  */
 public class CrossReference {
@@ -1,9 +0,0 @@
-package challenge_it.racbit.model.reports.generators.utils;
-
-import org.apache.poi.ss.usermodel.Cell;
-
-public interface IPredicate {
-	
-	public void execute (Cell cell);
-
-}
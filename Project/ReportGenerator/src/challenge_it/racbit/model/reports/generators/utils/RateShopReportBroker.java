@@ -1,16 +1,21 @@
 package challenge_it.racbit.model.reports.generators.utils;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-import challenge_it.racbit.model.core.Product;
+import challenge_it.racbit.model.core.base.NameDictionary;
 
 /**
  * Represents the information contained in the Broker
  * 
- *  @author Ctia Moreira e Joo Taborda
+ * Holds the broker as defined in the configuration. Instances are immutable, so they can be
+ * shared by concurrent reports; the suppliers and products found in each report are kept by
+ * {@link RateShopReportBrokerInfo}.
+ * 
+ *  @author Cátia Moreira e João Taborda
  *
  */
 public class RateShopReportBroker {
@@ -19,32 +24,32 @@ public class RateShopReportBroker {
 	/**
 	 * Defines the name of the broker
 	 */
-	private String _name;
+	private final String _name;
 	
 	/**
-	 * States that the broker was a minimum
+	 * Defines the id of the broker's name {@see NameDictionary}
 	 */
-	private boolean _hasMinimum;
+	private final int _id;
 	
 	/**
-	 * Defines the name of the minimum column
+	 * States that the broker was a minimum
 	 */
-	private String _minColumnName;
+	private final boolean _hasMinimum;
 	
 	/**
-	 * List to fill the suppliers header
+	 * Defines the name of the minimum column
 	 */
-	private List<String> _suppliersHeader;
+	private final String _minColumnName;
 	
 	/**
-	 * List of the broker's products
+	 * List to fill the suppliers header
 	 */
-	private List<Product> _brokerProducts;
+	private final List<String> _suppliersHeader;
 	
 	/**
-	 * Contains all of the suppliers and their column index
+	 * Contains all of the suppliers and their column index, by supplier id
 	 */
-	private Map<String, CrossReference> _suppliersMap;
+	private final Map<Integer, CrossReference> _suppliersMap;
 	
 	/**
 	 * Creates a Broker instance
@@ -52,43 +57,49 @@ public class RateShopReportBroker {
 	 * @param name The broker name
 	 * @param mininum If has a minimum column
 	 * @param columnName The name of the minimum column
+	 * @param suppliers The configured suppliers, in the header order
+	 * @param headerRow The row index of the suppliers header
 	 */
-	public RateShopReportBroker(String name, boolean mininum, String columnName){
+	public RateShopReportBroker(String name, boolean mininum, String columnName, List<String> suppliers, int headerRow){
 		_name = name;
+		_id = NameDictionary.getId(name);
 		_hasMinimum = mininum;
 		_minColumnName = columnName;
-		_suppliersHeader = new LinkedList<String>();
-		_brokerProducts = new LinkedList<Product>();
-		_suppliersMap = new HashMap<String, CrossReference>();
+		
+		Map<Integer, CrossReference> suppliersMap = new HashMap<Integer, CrossReference>();
+		
+		for(int i = 0; i < suppliers.size(); i++)
+			suppliersMap.put(NameDictionary.getId(suppliers.get(i)), new CrossReference(headerRow, i));
+		
+		_suppliersHeader = Collections.unmodifiableList(new ArrayList<String>(suppliers));
+		_suppliersMap = Collections.unmodifiableMap(suppliersMap);
 	}
 	
 	/**
 	 * Gets the list of suppliers and their column index
 	 * 
-	 * @return A map of suppliers
+	 * @return A map of suppliers, by supplier id
 	 */
-	public Map<String, CrossReference> getSuppliersMap(){
+	public Map<Integer, CrossReference> getSuppliersMap(){
 		return _suppliersMap;
 	}
 	
 	/**
-	 * Adds a supplier to the map
+	 * Get the Broker name
 	 * 
-	 * @param supplier The name of the supplier
-	 * @param column The column index of the supplier
+	 * @return The broker name
 	 */
-	public void addSupplier(String supplier, CrossReference ref){
-		_suppliersHeader.add(supplier);
-		_suppliersMap.put(supplier, ref);
+	public String getName(){
+		return _name;
 	}
 	
 	/**
-	 * Get the Broker name
+	 * Get the id of the Broker name
 	 * 
-	 * @return The broker name
+	 * @return The broker id
 	 */
-	public String getName(){
-		return _name;
+	public int getId(){
+		return _id;
 	}
 
 	/**
@@ -117,20 +128,4 @@ public class RateShopReportBroker {
 	public String getMinimumColumnName() {
 		return _minColumnName;
 	}
-
-	/**
-	 * Gets the list of the broker's products
-	 * 
-	 * @return the value of _brokerProducts
-	 */
-	public List<Product> getProducts() {
-		return _brokerProducts;
-	}
-
-	/**
-	 * Adds a product to the list of products
-	 */
-	public void addProduct(Product product) {
-		_brokerProducts.add(product);
-	}
 }
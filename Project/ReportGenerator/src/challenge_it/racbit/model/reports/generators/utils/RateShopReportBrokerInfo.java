@@ -0,0 +1,159 @@
+package challenge_it.racbit.model.reports.generators.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import challenge_it.racbit.model.core.base.NameDictionary;
+
+/**
+ * Represents the information of a Broker in a single report
+ * 
+ * Starts with the suppliers of the configured broker and adds the suppliers and products
+ * found in the report results, leaving the configuration unchanged.
+ */
+public class RateShopReportBrokerInfo {
+
+	/**
+	 * The broker as defined in the configuration
+	 */
+	private final RateShopReportBroker _broker;
+	
+	/**
+	 * List to fill the suppliers header
+	 */
+	private final List<String> _suppliersHeader;
+	
+	/**
+	 * The rows of the broker's products in the batch
+	 */
+	private int[] _productRows;
+	
+	/**
+	 * The number of products
+	 */
+	private int _productCount;
+	
+	/**
+	 * Contains all of the suppliers and their column index, by supplier id
+	 */
+	private final Map<Integer, CrossReference> _suppliersMap;
+	
+	/**
+	 * Creates an instance with the configured suppliers of the broker
+	 * 
+	 * @param broker The broker as defined in the configuration
+	 */
+	public RateShopReportBrokerInfo(RateShopReportBroker broker){
+		_broker = broker;
+		_suppliersHeader = new LinkedList<String>(broker.getSuppliersList());
+		_productRows = new int[16];
+		_suppliersMap = new HashMap<Integer, CrossReference>(broker.getSuppliersMap());
+	}
+	
+	/**
+	 * Gets the broker as defined in the configuration
+	 * 
+	 * @return The configured broker
+	 */
+	public RateShopReportBroker getBroker(){
+		return _broker;
+	}
+	
+	/**
+	 * Gets the list of suppliers and their column index
+	 * 
+	 * @return A map of suppliers, by supplier id
+	 */
+	public Map<Integer, CrossReference> getSuppliersMap(){
+		return _suppliersMap;
+	}
+	
+	/**
+	 * Adds a supplier to the map
+	 * 
+	 * @param supplier The name of the supplier
+	 * @param ref The column index of the supplier
+	 */
+	public void addSupplier(String supplier, CrossReference ref){
+		_suppliersHeader.add(supplier);
+		_suppliersMap.put(NameDictionary.getId(supplier), ref);
+	}
+	
+	/**
+	 * Get the Broker name
+	 * 
+	 * @return The broker name
+	 */
+	public String getName(){
+		return _broker.getName();
+	}
+	
+	/**
+	 * Get the id of the Broker name
+	 * 
+	 * @return The broker id
+	 */
+	public int getId(){
+		return _broker.getId();
+	}
+
+	/**
+	 * Gets the supplier List
+	 * 
+	 * @return The suppliers list
+	 */
+	public List<String> getSuppliersList() {
+		return _suppliersHeader;
+	}
+
+	/**
+	 * Gets the flag that indicates if the broker should have a minimum column
+	 * 
+	 * @return true if the broker has a minimum column
+	 */
+	public boolean hasMinimum() {
+		return _broker.hasMinimum();
+	}
+
+	/**
+	 * Gets the name of the minimum column
+	 * 
+	 * @return the name of the minimum column
+	 */
+	public String getMinimumColumnName() {
+		return _broker.getMinimumColumnName();
+	}
+
+	/**
+	 * Gets the number of the broker's products
+	 * 
+	 * @return the number of products
+	 */
+	public int getProductCount() {
+		return _productCount;
+	}
+
+	/**
+	 * Gets the row of one of the broker's products
+	 * 
+	 * @param index The index of the product, in the order they were added
+	 * @return the row of the product in the batch
+	 */
+	public int getProductRow(int index) {
+		return _productRows[index];
+	}
+
+	/**
+	 * Adds a product to the products of the broker
+	 * 
+	 * @param row The row of the product in the batch
+	 */
+	public void addProduct(int row) {
+		if(_productCount == _productRows.length)
+			_productRows = Arrays.copyOf(_productRows, _productCount * 2);
+		_productRows[_productCount++] = row;
+	}
+}
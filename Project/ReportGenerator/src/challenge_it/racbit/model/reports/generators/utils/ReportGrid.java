@@ -0,0 +1,66 @@
+package challenge_it.racbit.model.reports.generators.utils;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+
+/**
+ * The grid of cells where a report is written.
+ *
+ * It allows the same report layout to be written through POI's object model
+ * ({@link SheetReportGrid}) or straight to SpreadsheetML ({@link SpreadsheetMLWriter}).
+ * Rows and columns are 0-based.
+ */
+public interface ReportGrid {
+
+	/**
+	 * Sets a cell with a text
+	 *
+	 * @param row The row index
+	 * @param column The column index
+	 * @param value The text of the cell
+	 * @param style The style of the cell
+	 */
+	void setCell(int row, int column, String value, CellStyleDescriptor style);
+
+	/**
+	 * Sets a cell with a number
+	 *
+	 * @param row The row index
+	 * @param column The column index
+	 * @param value The number of the cell
+	 * @param style The style of the cell
+	 */
+	void setCell(int row, int column, double value, CellStyleDescriptor style);
+
+	/**
+	 * Sets a cell without value
+	 *
+	 * @param row The row index
+	 * @param column The column index
+	 * @param style The style of the cell
+	 */
+	void setCell(int row, int column, CellStyleDescriptor style);
+
+	/**
+	 * States whether a cell was already set
+	 *
+	 * @param row The row index
+	 * @param column The column index
+	 * @return true if the cell was set
+	 */
+	boolean hasCell(int row, int column);
+
+	/**
+	 * Merges a region of cells
+	 *
+	 * @param region The region to merge
+	 */
+	void addMergedRegion(CellRangeAddress region);
+
+	/**
+	 * Sets the width of a column
+	 *
+	 * @param column The column index
+	 * @param width The width, in 1/256th of a character
+	 */
+	void setColumnWidth(int column, int width);
+}
@@ -0,0 +1,263 @@
+package challenge_it.racbit.model.reports.generators.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * The static part of a report (the cells and merged regions that only depend on the configuration).
+ *
+ * The skeleton is rendered once, with the same code used to write a report, and kept as a
+ * compact byte image of its cells and merged regions. Each new report gets a copy of it
+ * through {@link #stamp(CellStyles, Sheet)}, so only the values of the run are written afterwards.
+ *
+ * The rendered skeletons are kept by configuration, see {@link #get(String, Object, Renderer)}.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class ReportSkeleton {
+
+	/**
+	 * Writes the static part of a report
+	 */
+	public interface Renderer {
+
+		/**
+		 * Writes the static part of a report in the given sheet
+		 *
+		 * @param styles The workbook styles
+		 * @param sheet The representation of the sheet
+		 */
+		void render(CellStyles styles, Sheet sheet);
+	}
+
+	/**
+	 * Cell types of the byte image
+	 */
+	private static final byte BLANK = 0, NUMERIC = 1, STRING = 2;
+
+	/**
+	 * Contains the skeletons already rendered, by configuration
+	 */
+	private static final ConcurrentMap<String, ReportSkeleton> SKELETONS = new ConcurrentHashMap<String, ReportSkeleton>();
+
+	/**
+	 * The cells and merged regions of the skeleton
+	 */
+	private final byte[] _image;
+
+	/**
+	 * The styles used by the cells, referred in the image by their position
+	 */
+	private final CellStyleDescriptor[] _styles;
+
+	/**
+	 * The configuration object the skeleton was rendered from, if known
+	 */
+	private final Object _source;
+
+	/**
+	 * Creates an instance
+	 */
+	private ReportSkeleton(byte[] image, CellStyleDescriptor[] styles, Object source) {
+		_image = image;
+		_styles = styles;
+		_source = source;
+	}
+
+	/**
+	 * Gets the skeleton of the given configuration, rendering it the first time it is needed
+	 *
+	 * The skeleton is rendered again when the configuration object is not the one it was rendered
+	 * from, so a configuration that was reloaded never gets the skeleton of the previous one.
+	 *
+	 * @param configuration The path to the configuration of the report
+	 * @param source The configuration object the skeleton is rendered from
+	 * @param renderer The object that writes the static part of the report
+	 * @return the report skeleton
+	 */
+	public static ReportSkeleton get(String configuration, Object source, Renderer renderer) {
+		ReportSkeleton skeleton = SKELETONS.get(configuration);
+
+		if(skeleton == null || skeleton._source != source){
+			skeleton = render(renderer, source);
+			SKELETONS.put(configuration, skeleton);
+		}
+
+		return skeleton;
+	}
+
+	/**
+	 * Discards the skeleton of the given configuration, so it is rendered again the next time it is needed
+	 *
+	 * @param configuration The path to the configuration of the report
+	 */
+	public static void invalidate(String configuration) {
+		SKELETONS.remove(configuration);
+	}
+
+	/**
+	 * Renders a skeleton in a scratch workbook and captures it
+	 *
+	 * @param renderer The object that writes the static part of the report
+	 * @return the report skeleton
+	 */
+	public static ReportSkeleton render(Renderer renderer) {
+		return render(renderer, null);
+	}
+
+	/**
+	 * Renders a skeleton in a scratch workbook and captures it
+	 *
+	 * @param renderer The object that writes the static part of the report
+	 * @param source The configuration object the skeleton is rendered from
+	 * @return the report skeleton
+	 */
+	private static ReportSkeleton render(Renderer renderer, Object source) {
+		XSSFWorkbook workbook = new XSSFWorkbook();
+		CellStyles styles = new CellStyles(workbook);
+		Sheet sheet = workbook.createSheet();
+
+		renderer.render(styles, sheet);
+
+		List<CellStyleDescriptor> descriptors = new ArrayList<CellStyleDescriptor>();
+		Map<CellStyleDescriptor, Integer> positions = new HashMap<CellStyleDescriptor, Integer>();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		try {
+			out.writeInt(sheet.getPhysicalNumberOfRows());
+
+			for(Row row : sheet){
+				out.writeInt(row.getRowNum());
+				out.writeInt(row.getPhysicalNumberOfCells());
+
+				for(Cell cell : row){
+					CellStyleDescriptor descriptor = styles.getDescriptor(cell.getCellStyle());
+					Integer position = positions.get(descriptor);
+
+					if(position == null){
+						position = descriptors.size();
+						descriptors.add(descriptor);
+						positions.put(descriptor, position);
+					}
+
+					out.writeShort(cell.getColumnIndex());
+					out.writeShort(position);
+
+					switch(cell.getCellType()){
+					case Cell.CELL_TYPE_NUMERIC:
+						out.writeByte(NUMERIC);
+						out.writeDouble(cell.getNumericCellValue());
+						break;
+					case Cell.CELL_TYPE_STRING:
+						out.writeByte(STRING);
+						out.writeUTF(cell.getStringCellValue());
+						break;
+					case Cell.CELL_TYPE_BLANK:
+						out.writeByte(BLANK);
+						break;
+					default:
+						throw new IllegalArgumentException("Unsupported cell type in report skeleton: " + cell.getCellType());
+					}
+				}
+			}
+
+			out.writeInt(sheet.getNumMergedRegions());
+
+			for(int i = 0; i < sheet.getNumMergedRegions(); i++){
+				CellRangeAddress region = sheet.getMergedRegion(i);
+				out.writeInt(region.getFirstRow());
+				out.writeInt(region.getLastRow());
+				out.writeInt(region.getFirstColumn());
+				out.writeInt(region.getLastColumn());
+			}
+
+			out.flush();
+		} catch (IOException e) {
+			// Never thrown when writing to memory
+			throw new IllegalStateException(e);
+		}
+
+		return new ReportSkeleton(bytes.toByteArray(), descriptors.toArray(new CellStyleDescriptor[descriptors.size()]), source);
+	}
+
+	/**
+	 * Writes a copy of the skeleton in the given sheet
+	 *
+	 * @param styles The workbook styles
+	 * @param sheet The representation of the sheet
+	 * @see #stamp(ReportGrid)
+	 */
+	public void stamp(CellStyles styles, Sheet sheet) {
+		stamp(new SheetReportGrid(styles, sheet));
+	}
+
+	/**
+	 * Writes a copy of the skeleton in the given grid
+	 *
+	 * The rows are written in increasing order, so the skeleton must be stamped before any
+	 * other row is written when the report is streamed.
+	 *
+	 * @param grid The grid where the report is written
+	 */
+	public void stamp(ReportGrid grid) {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(_image));
+
+		try {
+			int numberOfRows = in.readInt();
+
+			for(int i = 0; i < numberOfRows; i++){
+				int row = in.readInt();
+				int numberOfCells = in.readInt();
+
+				for(int j = 0; j < numberOfCells; j++){
+					int column = in.readShort();
+					CellStyleDescriptor style = _styles[in.readShort()];
+
+					switch(in.readByte()){
+					case NUMERIC:
+						grid.setCell(row, column, in.readDouble(), style);
+						break;
+					case STRING:
+						grid.setCell(row, column, in.readUTF(), style);
+						break;
+					default:
+						grid.setCell(row, column, style);
+					}
+				}
+			}
+
+			int numberOfRegions = in.readInt();
+
+			for(int i = 0; i < numberOfRegions; i++){
+				grid.addMergedRegion(new CellRangeAddress(in.readInt(), in.readInt(), in.readInt(), in.readInt()));
+			}
+		} catch (IOException e) {
+			// Never thrown when reading from memory
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Gets the size of the byte image
+	 *
+	 * @return the number of bytes
+	 */
+	public int getSize() {
+		return _image.length;
+	}
+}
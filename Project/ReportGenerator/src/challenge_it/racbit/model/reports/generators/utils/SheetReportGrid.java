@@ -0,0 +1,101 @@
+package challenge_it.racbit.model.reports.generators.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+/**
+ * A report grid written to a POI sheet
+ */
+public class SheetReportGrid implements ReportGrid {
+
+	/**
+	 * The workbook styles
+	 */
+	private final CellStyles _styles;
+
+	/**
+	 * The representation of the sheet
+	 */
+	private final Sheet _sheet;
+
+	/**
+	 * Creates a grid over the given sheet
+	 *
+	 * @param styles The workbook styles
+	 * @param sheet The representation of the sheet
+	 */
+	public SheetReportGrid(CellStyles styles, Sheet sheet) {
+		_styles = styles;
+		_sheet = sheet;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setCell(int row, int column, String value, CellStyleDescriptor style) {
+		createCell(row, column, style).setCellValue(value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setCell(int row, int column, double value, CellStyleDescriptor style) {
+		createCell(row, column, style).setCellValue(value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setCell(int row, int column, CellStyleDescriptor style) {
+		createCell(row, column, style);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasCell(int row, int column) {
+		Row r = _sheet.getRow(row);
+		return r != null && r.getCell(column) != null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addMergedRegion(CellRangeAddress region) {
+		_sheet.addMergedRegion(region);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setColumnWidth(int column, int width) {
+		_sheet.setColumnWidth(column, width);
+	}
+
+	/**
+	 * Creates a cell with the given style
+	 *
+	 * @param row The row index
+	 * @param column The column index
+	 * @param style The style of the cell
+	 * @return the cell
+	 */
+	private Cell createCell(int row, int column, CellStyleDescriptor style) {
+		Row r = _sheet.getRow(row);
+
+		if(r == null)
+			r = _sheet.createRow(row);
+
+		Cell cell = r.createCell(column);
+		cell.setCellStyle(_styles.get(style));
+		return cell;
+	}
+}
@@ -0,0 +1,620 @@
+package challenge_it.racbit.model.reports.generators.utils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+
+/**
+ * A report grid written straight to a XLSX file, without POI's object model.
+ *
+ * The sheet XML is streamed into the zip as the rows are completed; only the rows inside the
+ * row access window are kept in memory, each one as a small map of pending cells. The texts
+ * go to a shared strings table and the cell styles to a styles part, both written when the
+ * writer is closed. As in a streaming workbook, the rows that left the window can't be changed,
+ * and the columns' width must be set before the first row is written.
+ *
+ * Write errors are kept and thrown by {@link #close()}, which must always be called.
+ *
+ * This class instances are not thread-safe.
+ */
+public class SpreadsheetMLWriter implements ReportGrid, Closeable {
+
+	/**
+	 * Value of the row access window size that states that all the rows are kept until the writer is closed
+	 */
+	public static final int ALL_ROWS = 0;
+
+	private static final String MAIN_NAMESPACE = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+	private static final String RELATIONSHIPS_NAMESPACE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+	private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+	/**
+	 * The names of the border styles, by POI border constant
+	 */
+	private static final String[] BORDER_STYLES = {"none", "thin", "medium", "dashed", "dotted", "thick", "double", "hair",
+		"mediumDashed", "dashDot", "mediumDashDot", "dashDotDot", "mediumDashDotDot", "slantDashDot"};
+
+	/**
+	 * The font used by the cells without style, the same as a new POI workbook
+	 */
+	public static final String DEFAULT_FONT_NAME = "Calibri";
+	public static final short DEFAULT_FONT_SIZE = 11;
+
+	/**
+	 * The first id of the custom data formats
+	 */
+	private static final int FIRST_CUSTOM_FORMAT = 164;
+
+	/**
+	 * Cell types
+	 */
+	private static final byte BLANK = 0, NUMERIC = 1, STRING = 2;
+
+	/**
+	 * A cell that wasn't written yet
+	 */
+	private static final class PendingCell {
+		private final byte _type;
+		private final double _value;
+		private final int _style;
+
+		PendingCell(byte type, double value, int style) {
+			_type = type;
+			_value = value;
+			_style = style;
+		}
+	}
+
+	private final ZipOutputStream _zip;
+	private final Writer _out;
+
+	/**
+	 * The number of rows kept in memory, or {@link #ALL_ROWS}
+	 */
+	private final int _rowAccessWindowSize;
+
+	/**
+	 * Contains the rows inside the window, by row index, each with its cells by column index
+	 */
+	private final TreeMap<Integer, TreeMap<Integer, PendingCell>> _rows;
+
+	/**
+	 * Contains the columns' width, by column index
+	 */
+	private final TreeMap<Integer, Integer> _columnWidths;
+
+	private final List<CellRangeAddress> _mergedRegions;
+
+	/**
+	 * Contains the shared strings, by text, with their index
+	 */
+	private final Map<String, Integer> _sharedStrings;
+
+	/**
+	 * The number of cells that refer to a shared string
+	 */
+	private int _sharedStringsCount;
+
+	/**
+	 * Contains the styles used, with their index in the styles part
+	 */
+	private final Map<CellStyleDescriptor, Integer> _styles;
+
+	/**
+	 * The index of the last row written to the zip, or -1
+	 */
+	private int _lastWrittenRow;
+
+	/**
+	 * States that the sheet data was started
+	 */
+	private boolean _sheetStarted;
+
+	/**
+	 * The first write error, thrown by {@link #close()}
+	 */
+	private IOException _error;
+
+	/**
+	 * Creates a writer of a XLSX file with one sheet
+	 *
+	 * @param out The stream where the file is written; it is closed with the writer
+	 * @param rowAccessWindowSize The number of rows kept in memory, or {@link #ALL_ROWS}
+	 * @throws IOException When the package parts can't be written
+	 */
+	public SpreadsheetMLWriter(OutputStream out, int rowAccessWindowSize) throws IOException {
+		if(rowAccessWindowSize < 0)
+			throw new IllegalArgumentException();
+
+		_zip = new ZipOutputStream(out);
+		_out = new BufferedWriter(new OutputStreamWriter(_zip, "UTF-8"), 64*1024);
+		_rowAccessWindowSize = rowAccessWindowSize;
+		_rows = new TreeMap<Integer, TreeMap<Integer, PendingCell>>();
+		_columnWidths = new TreeMap<Integer, Integer>();
+		_mergedRegions = new ArrayList<CellRangeAddress>();
+		_sharedStrings = new LinkedHashMap<String, Integer>();
+		_styles = new LinkedHashMap<CellStyleDescriptor, Integer>();
+		_lastWrittenRow = -1;
+
+		writePackageParts();
+		putEntry("xl/worksheets/sheet1.xml");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setCell(int row, int column, String value, CellStyleDescriptor style) {
+		Integer index = _sharedStrings.get(value);
+
+		if(index == null){
+			index = _sharedStrings.size();
+			_sharedStrings.put(value, index);
+		}
+
+		_sharedStringsCount++;
+		put(row, column, new PendingCell(STRING, index, getStyle(style)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setCell(int row, int column, double value, CellStyleDescriptor style) {
+		put(row, column, new PendingCell(NUMERIC, value, getStyle(style)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setCell(int row, int column, CellStyleDescriptor style) {
+		put(row, column, new PendingCell(BLANK, 0, getStyle(style)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalStateException if the row was already written
+	 */
+	@Override
+	public boolean hasCell(int row, int column) {
+		checkRow(row);
+
+		TreeMap<Integer, PendingCell> cells = _rows.get(row);
+		return cells != null && cells.containsKey(column);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addMergedRegion(CellRangeAddress region) {
+		_mergedRegions.add(region);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalStateException if a row was already written
+	 */
+	@Override
+	public void setColumnWidth(int column, int width) {
+		if(_sheetStarted)
+			throw new IllegalStateException("The columns' width must be set before the rows are written");
+
+		_columnWidths.put(column, width);
+	}
+
+	/**
+	 * Writes the remaining rows, the shared strings and the styles, and closes the stream
+	 *
+	 * @throws IOException When the file can't be written
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if(_error == null){
+				while(!_rows.isEmpty())
+					writeFirstRow();
+
+				if(!_sheetStarted)
+					startSheet();
+
+				_out.write("</sheetData>");
+
+				if(!_mergedRegions.isEmpty()){
+					_out.write("<mergeCells count=\"" + _mergedRegions.size() + "\">");
+
+					for(CellRangeAddress region : _mergedRegions)
+						_out.write("<mergeCell ref=\"" + region.formatAsString() + "\"/>");
+
+					_out.write("</mergeCells>");
+				}
+
+				_out.write("</worksheet>");
+				closeEntry();
+
+				writeSharedStrings();
+				writeStyles();
+
+				_out.flush();
+				_zip.finish();
+			}
+		} catch (IOException e) {
+			_error = e;
+		} finally {
+			_out.close();
+		}
+
+		if(_error != null)
+			throw _error;
+	}
+
+	/**
+	 * Keeps a cell in its row, writing the rows that leave the window
+	 */
+	private void put(int row, int column, PendingCell cell) {
+		checkRow(row);
+
+		TreeMap<Integer, PendingCell> cells = _rows.get(row);
+
+		if(cells == null){
+			cells = new TreeMap<Integer, PendingCell>();
+			_rows.put(row, cells);
+		}
+
+		cells.put(column, cell);
+
+		if(_error == null && _rowAccessWindowSize != ALL_ROWS){
+			try {
+				while(_rows.size() > _rowAccessWindowSize)
+					writeFirstRow();
+			} catch (IOException e) {
+				_error = e;
+			}
+		}
+	}
+
+	/**
+	 * Checks that a row can still be changed
+	 */
+	private void checkRow(int row) {
+		if(row <= _lastWrittenRow)
+			throw new IllegalStateException("Row " + row + " was already written");
+	}
+
+	/**
+	 * Gets the index of a style in the styles part
+	 */
+	private int getStyle(CellStyleDescriptor style) {
+		Integer index = _styles.get(style);
+
+		if(index == null){
+			// The style 0 is the default one
+			index = _styles.size() + 1;
+			_styles.put(style, index);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Writes the row with the lowest index and removes it from the window
+	 */
+	private void writeFirstRow() throws IOException {
+		if(!_sheetStarted)
+			startSheet();
+
+		Map.Entry<Integer, TreeMap<Integer, PendingCell>> row = _rows.pollFirstEntry();
+		String rowNumber = String.valueOf(row.getKey() + 1);
+
+		_out.write("<row r=\"" + rowNumber + "\">");
+
+		for(Map.Entry<Integer, PendingCell> entry : row.getValue().entrySet()){
+			PendingCell cell = entry.getValue();
+
+			_out.write("<c r=\"");
+			_out.write(CellReference.convertNumToColString(entry.getKey()));
+			_out.write(rowNumber);
+			_out.write("\" s=\"" + cell._style + "\"");
+
+			switch(cell._type){
+			case NUMERIC:
+				_out.write("><v>" + cell._value + "</v></c>");
+				break;
+			case STRING:
+				_out.write(" t=\"s\"><v>" + (int) cell._value + "</v></c>");
+				break;
+			default:
+				_out.write("/>");
+			}
+		}
+
+		_out.write("</row>");
+		_lastWrittenRow = row.getKey();
+	}
+
+	/**
+	 * Writes the beginning of the sheet, up to the sheet data
+	 */
+	private void startSheet() throws IOException {
+		_sheetStarted = true;
+
+		_out.write(XML_HEADER);
+		_out.write("<worksheet xmlns=\"" + MAIN_NAMESPACE + "\" xmlns:r=\"" + RELATIONSHIPS_NAMESPACE + "\">");
+		_out.write("<sheetViews><sheetView workbookViewId=\"0\" tabSelected=\"1\"/></sheetViews>");
+
+		if(!_columnWidths.isEmpty()){
+			_out.write("<cols>");
+
+			for(Map.Entry<Integer, Integer> width : _columnWidths.entrySet())
+				_out.write("<col min=\"" + (width.getKey() + 1) + "\" max=\"" + (width.getKey() + 1)
+						+ "\" width=\"" + (width.getValue() / 256.0) + "\" customWidth=\"1\"/>");
+
+			_out.write("</cols>");
+		}
+
+		_out.write("<sheetData>");
+	}
+
+	/**
+	 * Writes the content types, the relationships and the workbook parts
+	 */
+	private void writePackageParts() throws IOException {
+		putEntry("[Content_Types].xml");
+		_out.write(XML_HEADER);
+		_out.write("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+				+ "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+				+ "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+				+ "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+				+ "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+				+ "<Override PartName=\"/xl/sharedStrings.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sharedStrings+xml\"/>"
+				+ "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>"
+				+ "</Types>");
+		closeEntry();
+
+		putEntry("_rels/.rels");
+		_out.write(XML_HEADER);
+		_out.write("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+				+ "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+				+ "</Relationships>");
+		closeEntry();
+
+		putEntry("xl/workbook.xml");
+		_out.write(XML_HEADER);
+		_out.write("<workbook xmlns=\"" + MAIN_NAMESPACE + "\" xmlns:r=\"" + RELATIONSHIPS_NAMESPACE + "\">"
+				+ "<bookViews><workbookView/></bookViews>"
+				+ "<sheets><sheet name=\"Sheet0\" sheetId=\"1\" r:id=\"rId1\"/></sheets>"
+				+ "</workbook>");
+		closeEntry();
+
+		putEntry("xl/_rels/workbook.xml.rels");
+		_out.write(XML_HEADER);
+		_out.write("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+				+ "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+				+ "<Relationship Id=\"rId2\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/sharedStrings\" Target=\"sharedStrings.xml\"/>"
+				+ "<Relationship Id=\"rId3\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>"
+				+ "</Relationships>");
+		closeEntry();
+	}
+
+	/**
+	 * Writes the shared strings part
+	 */
+	private void writeSharedStrings() throws IOException {
+		putEntry("xl/sharedStrings.xml");
+		_out.write(XML_HEADER);
+		_out.write("<sst xmlns=\"" + MAIN_NAMESPACE + "\" count=\"" + _sharedStringsCount + "\" uniqueCount=\"" + _sharedStrings.size() + "\">");
+
+		for(String text : _sharedStrings.keySet()){
+			_out.write("<si><t xml:space=\"preserve\">");
+			writeEscaped(text);
+			_out.write("</t></si>");
+		}
+
+		_out.write("</sst>");
+		closeEntry();
+	}
+
+	/**
+	 * Writes the styles part, with the data formats, fonts, fills and borders used by the styles
+	 */
+	private void writeStyles() throws IOException {
+		Map<String, Integer> formats = new LinkedHashMap<String, Integer>();
+		Map<String, Integer> fonts = new LinkedHashMap<String, Integer>();
+		Map<Short, Integer> fills = new LinkedHashMap<Short, Integer>();
+		Map<String, Integer> borders = new LinkedHashMap<String, Integer>();
+		StringBuilder xfs = new StringBuilder();
+
+		String noBorders = border(CellStyle.BORDER_NONE, CellStyle.BORDER_NONE, CellStyle.BORDER_NONE, CellStyle.BORDER_NONE);
+		borders.put(noBorders, 0);
+
+		for(CellStyleDescriptor style : _styles.keySet()){
+			int format = BuiltinFormats.getBuiltinFormat(style.getDataFormat());
+
+			if(format == -1){
+				Integer custom = formats.get(style.getDataFormat());
+
+				if(custom == null){
+					custom = FIRST_CUSTOM_FORMAT + formats.size();
+					formats.put(style.getDataFormat(), custom);
+				}
+
+				format = custom;
+			}
+
+			int font = getIndex(fonts, font(CellStyles.FONT_NAME, style.getFontSize(), style.isBold(), style.getFontColor()), 1);
+			int fill = getIndex(fills, style.getFillColor(), 2);
+			int border = getIndex(borders, border(style.getBorderLeft(), style.getBorderRight(), style.getBorderTop(), style.getBorderBottom()), 0);
+
+			xfs.append("<xf numFmtId=\"").append(format).append("\" fontId=\"").append(font)
+				.append("\" fillId=\"").append(fill).append("\" borderId=\"").append(border)
+				.append("\" xfId=\"0\" applyNumberFormat=\"1\" applyFont=\"1\" applyFill=\"1\" applyBorder=\"1\" applyAlignment=\"1\">")
+				.append("<alignment");
+
+			String alignment = alignment(style.getAlignment());
+
+			if(alignment != null)
+				xfs.append(" horizontal=\"").append(alignment).append('"');
+
+			xfs.append(" vertical=\"center\"");
+
+			if(style.getRotation() != 0)
+				xfs.append(" textRotation=\"").append(style.getRotation()).append('"');
+
+			xfs.append("/></xf>");
+		}
+
+		putEntry("xl/styles.xml");
+		_out.write(XML_HEADER);
+		_out.write("<styleSheet xmlns=\"" + MAIN_NAMESPACE + "\">");
+
+		if(!formats.isEmpty()){
+			_out.write("<numFmts count=\"" + formats.size() + "\">");
+
+			for(Map.Entry<String, Integer> format : formats.entrySet()){
+				_out.write("<numFmt numFmtId=\"" + format.getValue() + "\" formatCode=\"");
+				writeEscaped(format.getKey());
+				_out.write("\"/>");
+			}
+
+			_out.write("</numFmts>");
+		}
+
+		_out.write("<fonts count=\"" + (fonts.size() + 1) + "\">");
+		_out.write(font(DEFAULT_FONT_NAME, DEFAULT_FONT_SIZE, false, Font.COLOR_NORMAL));
+
+		for(String font : fonts.keySet())
+			_out.write(font);
+
+		_out.write("</fonts>");
+
+		_out.write("<fills count=\"" + (fills.size() + 2) + "\">");
+		_out.write("<fill><patternFill patternType=\"none\"/></fill><fill><patternFill patternType=\"gray125\"/></fill>");
+
+		for(Short color : fills.keySet())
+			_out.write("<fill><patternFill patternType=\"solid\"><fgColor indexed=\"" + color + "\"/></patternFill></fill>");
+
+		_out.write("</fills>");
+
+		_out.write("<borders count=\"" + borders.size() + "\">");
+
+		for(String border : borders.keySet())
+			_out.write(border);
+
+		_out.write("</borders>");
+
+		_out.write("<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>");
+		_out.write("<cellXfs count=\"" + (_styles.size() + 1) + "\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>");
+		_out.write(xfs.toString());
+		_out.write("</cellXfs>");
+
+		_out.write("<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>");
+		_out.write("</styleSheet>");
+		closeEntry();
+	}
+
+	/**
+	 * Gets the index of a value, adding it to the given map if it isn't there yet
+	 *
+	 * @param indexes The values with their indexes
+	 * @param value The value
+	 * @param first The index of the first value of the map
+	 * @return the index of the value
+	 */
+	private static <T> int getIndex(Map<T, Integer> indexes, T value, int first) {
+		Integer index = indexes.get(value);
+
+		if(index == null){
+			index = first + indexes.size();
+			indexes.put(value, index);
+		}
+
+		return index;
+	}
+
+	private static String font(String name, short size, boolean bold, short color) {
+		return "<font>" + (bold ? "<b/>" : "") + "<sz val=\"" + size + "\"/>"
+				+ (color != Font.COLOR_NORMAL ? "<color indexed=\"" + color + "\"/>" : "")
+				+ "<name val=\"" + name + "\"/></font>";
+	}
+
+	private static String border(short left, short right, short top, short bottom) {
+		return "<border>" + borderSide("left", left) + borderSide("right", right) + borderSide("top", top)
+				+ borderSide("bottom", bottom) + "<diagonal/></border>";
+	}
+
+	private static String borderSide(String side, short border) {
+		if(border == CellStyle.BORDER_NONE)
+			return "<" + side + "/>";
+
+		return "<" + side + " style=\"" + BORDER_STYLES[border] + "\"/>";
+	}
+
+	private static String alignment(short alignment) {
+		switch(alignment){
+		case CellStyle.ALIGN_LEFT:
+			return "left";
+		case CellStyle.ALIGN_CENTER:
+			return "center";
+		case CellStyle.ALIGN_RIGHT:
+			return "right";
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Writes a text escaping the XML special characters and leaving out the characters not allowed in XML
+	 */
+	private void writeEscaped(String text) throws IOException {
+		for(int i = 0; i < text.length(); i++){
+			char c = text.charAt(i);
+
+			switch(c){
+			case '&':
+				_out.write("&amp;");
+				break;
+			case '<':
+				_out.write("&lt;");
+				break;
+			case '>':
+				_out.write("&gt;");
+				break;
+			case '"':
+				_out.write("&quot;");
+				break;
+			default:
+				if(c >= 0x20 || c == '\t' || c == '\n' || c == '\r')
+					_out.write(c);
+			}
+		}
+	}
+
+	private void putEntry(String name) throws IOException {
+		_out.flush();
+		_zip.putNextEntry(new ZipEntry(name));
+	}
+
+	private void closeEntry() throws IOException {
+		_out.flush();
+		_zip.closeEntry();
+	}
+}
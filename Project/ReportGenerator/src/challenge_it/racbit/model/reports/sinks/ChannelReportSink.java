@@ -0,0 +1,37 @@
+package challenge_it.racbit.model.reports.sinks;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import challenge_it.racbit.model.core.IReportSink;
+
+/**
+ * Writes the reports to a channel (e.g. a socket or an archive entry), one after the other.
+ * The channel belongs to the caller: it is never closed.
+ */
+public class ChannelReportSink implements IReportSink {
+
+	/**
+	 * The channel where the reports are written
+	 */
+	private final WritableByteChannel _channel;
+
+	/**
+	 * Creates an instance
+	 * 
+	 * @param channel The channel where the reports are written
+	 */
+	public ChannelReportSink(WritableByteChannel channel) {
+		_channel = channel;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public OutputStream open(String reportName) {
+		return new BufferedOutputStream(new UnclosableOutputStream(Channels.newOutputStream(_channel)), BUFFER_SIZE);
+	}
+}
@@ -0,0 +1,79 @@
+package challenge_it.racbit.model.reports.sinks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+
+import challenge_it.racbit.model.core.IReportSink;
+
+/**
+ * Writes each report to a file in a directory, through a file channel.
+ */
+public class DirectoryReportSink implements IReportSink {
+
+	/**
+	 * Specifies the names of the report files
+	 */
+	public interface NamingPolicy {
+
+		/**
+		 * Gets the name of a report file
+		 * 
+		 * @param reportName The name given to the report by its generator
+		 * @return the file name
+		 */
+		public String getFileName(String reportName);
+	}
+
+	/**
+	 * The naming policy that uses the name given by the report generator
+	 */
+	public static final NamingPolicy REPORT_NAME = new NamingPolicy() {
+		@Override
+		public String getFileName(String reportName) {
+			return reportName;
+		}
+	};
+
+	/**
+	 * The directory where the files are written
+	 */
+	private final File _directory;
+
+	/**
+	 * The naming policy of the files
+	 */
+	private final NamingPolicy _namingPolicy;
+
+	/**
+	 * Creates an instance that names the files after the reports
+	 * 
+	 * @param directory The directory where the files are written
+	 */
+	public DirectoryReportSink(File directory) {
+		this(directory, REPORT_NAME);
+	}
+
+	/**
+	 * Creates an instance
+	 * 
+	 * @param directory The directory where the files are written
+	 * @param namingPolicy The naming policy of the files
+	 */
+	public DirectoryReportSink(File directory, NamingPolicy namingPolicy) {
+		_directory = directory;
+		_namingPolicy = namingPolicy;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public OutputStream open(String reportName) throws IOException {
+		File file = new File(_directory, _namingPolicy.getFileName(reportName));
+		return new BufferedOutputStream(Channels.newOutputStream(new FileOutputStream(file).getChannel()), BUFFER_SIZE);
+	}
+}
@@ -0,0 +1,75 @@
+package challenge_it.racbit.model.reports.sinks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import challenge_it.racbit.model.core.IReportSink;
+
+/**
+ * Keeps the reports in memory. A report is available once its stream is closed.
+ * 
+ * This class instances are thread-safe.
+ */
+public class MemoryReportSink implements IReportSink {
+
+	/**
+	 * Contains the complete reports, by name
+	 */
+	private final Map<String, byte[]> _reports;
+
+	/**
+	 * Creates an instance
+	 */
+	public MemoryReportSink() {
+		_reports = new LinkedHashMap<String, byte[]>();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public OutputStream open(final String reportName) {
+		return new ByteArrayOutputStream(BUFFER_SIZE) {
+			
+			private boolean _closed;
+			
+			@Override
+			public void close() {
+				if(!_closed){
+					_closed = true;
+					
+					synchronized (_reports) {
+						_reports.put(reportName, toByteArray());
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Gets the content of a report
+	 * 
+	 * @param reportName The name of the report
+	 * @return the report content, or null if there isn't a complete report with that name
+	 */
+	public byte[] getReport(String reportName) {
+		synchronized (_reports) {
+			return _reports.get(reportName);
+		}
+	}
+
+	/**
+	 * Gets the names of the complete reports, in the order they were completed
+	 * 
+	 * @return the reports' names
+	 */
+	public List<String> getReportNames() {
+		synchronized (_reports) {
+			return new ArrayList<String>(_reports.keySet());
+		}
+	}
+}
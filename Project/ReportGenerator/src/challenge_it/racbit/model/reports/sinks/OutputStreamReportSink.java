@@ -0,0 +1,35 @@
+package challenge_it.racbit.model.reports.sinks;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+
+import challenge_it.racbit.model.core.IReportSink;
+
+/**
+ * Writes the reports to a stream (e.g. the body of an HTTP response), one after the other.
+ * The stream belongs to the caller: it is flushed after each report, but never closed.
+ */
+public class OutputStreamReportSink implements IReportSink {
+
+	/**
+	 * The stream where the reports are written
+	 */
+	private final OutputStream _out;
+
+	/**
+	 * Creates an instance
+	 * 
+	 * @param out The stream where the reports are written
+	 */
+	public OutputStreamReportSink(OutputStream out) {
+		_out = out;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public OutputStream open(String reportName) {
+		return new BufferedOutputStream(new UnclosableOutputStream(_out), BUFFER_SIZE);
+	}
+}
@@ -0,0 +1,37 @@
+package challenge_it.racbit.model.reports.sinks;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stream that flushes, instead of closing, the stream it writes to. Used for the
+ * destinations that belong to the caller, which are closed by the caller.
+ */
+class UnclosableOutputStream extends FilterOutputStream {
+
+	/**
+	 * Creates an instance
+	 * 
+	 * @param out The stream where the bytes are written
+	 */
+	UnclosableOutputStream(OutputStream out) {
+		super(out);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+	}
+
+	/**
+	 * Flushes the stream, leaving it open
+	 */
+	@Override
+	public void close() throws IOException {
+		out.flush();
+	}
+}